@@ -17,18 +17,24 @@
 package de.javakaffee.kryoserializers;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.List;
 
 /**
  * A kryo {@link Serializer} for lists created via {@link Arrays#asList(Object...)}.
  * <p>
+ * If all items are of the array's component type (e.g. for final component types like
+ * <code>String</code> or <code>Long</code>), the items are written without class information.
+ * </p>
+ * <p>
  * Note: This serializer does not support cyclic references, so if one of the objects
  * gets set the list as attribute this might cause an error during deserialization.
  * </p>
@@ -37,58 +43,80 @@ import java.util.List;
  */
 public class ArraysAsListSerializer extends Serializer<List<?>> {
 
-    private Field _arrayField;
+    private final Field _arrayField;
 
+    /**
+     * @throws IllegalStateException if the array of <code>java.util.Arrays$ArrayList</code> is not accessible.
+     */
     public ArraysAsListSerializer() {
-        try {
-            _arrayField = Class.forName( "java.util.Arrays$ArrayList" ).getDeclaredField( "a" );
-            _arrayField.setAccessible( true );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
-        }
+        _arrayField = FieldAccessor.getField( "java.util.Arrays$ArrayList", "a" );
     }
 
     @Override
     public List<?> read(final Kryo kryo, final Input input, final Class<? extends List<?>> type) {
         final int length = input.readInt(true);
-        Class<?> componentType = kryo.readClass( input ).getType();
+        final Registration registration = kryo.readClass( input );
+        Class<?> componentType = registration.getType();
         if (componentType.isPrimitive()) {
             componentType = getPrimitiveWrapperClass(componentType);
         }
-        try {
-            final Object items = Array.newInstance( componentType, length );
+        final boolean typed = input.readBoolean();
+        final Object[] items = (Object[]) Array.newInstance( componentType, length );
+        if ( typed ) {
+            final Serializer<?> serializer = registration.getSerializer();
             for( int i = 0; i < length; i++ ) {
-                Array.set(items, i, kryo.readClassAndObject( input ));
+                items[i] = kryo.readObjectOrNull( input, componentType, serializer );
+            }
+        } else {
+            for( int i = 0; i < length; i++ ) {
+                items[i] = kryo.readClassAndObject( input );
             }
-            return Arrays.asList( (Object[])items );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
         }
+        return Arrays.asList( items );
     }
 
     @Override
     public void write(final Kryo kryo, final Output output, final List<?> obj) {
-        try {
-            final Object[] array = (Object[]) _arrayField.get( obj );
-            output.writeInt(array.length, true);
-            final Class<?> componentType = array.getClass().getComponentType();
-            kryo.writeClass( output, componentType );
+        final Object[] array = getArray( obj );
+        output.writeInt(array.length, true);
+        final Class<?> componentType = array.getClass().getComponentType();
+        final Registration registration = kryo.writeClass( output, componentType );
+        final boolean typed = isTyped( componentType, array );
+        output.writeBoolean( typed );
+        if ( typed ) {
+            // all items are of the component type (or null), so there's no need to write the class per item
+            final Serializer<?> serializer = registration.getSerializer();
+            for( final Object item : array ) {
+                kryo.writeObjectOrNull( output, item, serializer );
+            }
+        } else {
             for( final Object item : array ) {
                 kryo.writeClassAndObject( output, item );
             }
-        } catch ( final RuntimeException e ) {
-             // Don't eat and wrap RuntimeExceptions because the ObjectBuffer.write...
-             // handles SerializationException specifically (resizing the buffer)...
-             throw e;
-        } catch ( final Exception e ) {
-             throw new RuntimeException( e );
         }
     }
 
+    /**
+     * Determines if all items of the given array are exactly of the given component type (or null),
+     * which is always the case for final component types. Array component types are reported as final
+     * but are covariant (an <code>Object[][]</code> may contain a <code>String[]</code>), so they're checked per item.
+     */
+    private static boolean isTyped( final Class<?> componentType, final Object[] array ) {
+        if ( !componentType.isArray() && Modifier.isFinal( componentType.getModifiers() ) ) {
+            return true;
+        }
+        for( final Object item : array ) {
+            if ( item != null && item.getClass() != componentType ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public List<?> copy(Kryo kryo, List<?> original) {
         try {
-            final Object[] array = (Object[]) _arrayField.get(original);
+            final Object[] array = getArray(original);
             kryo.reference(array);
             Object[] arrayCopy = kryo.copy(array);
             return Arrays.asList(arrayCopy);
@@ -97,6 +125,14 @@ public class ArraysAsListSerializer extends Serializer<List<?>> {
         }
     }
 
+    private Object[] getArray( final List<?> list ) {
+        try {
+            return (Object[]) _arrayField.get( list );
+        } catch ( final IllegalAccessException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
     private static Class<?> getPrimitiveWrapperClass(final Class<?> c) {
         if (c.isPrimitive()) {
             if (c.equals(Long.TYPE)) {
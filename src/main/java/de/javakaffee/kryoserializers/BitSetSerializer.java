@@ -7,38 +7,151 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+/**
+ * A serializer for {@link BitSet}s that works on the underlying words instead of single bits.
+ * <p>
+ * For each instance the cheapest of three encodings is chosen:
+ * <ul>
+ * <li>{@link #DENSE}: the words as returned by {@link BitSet#toLongArray()}</li>
+ * <li>{@link #SPARSE}: the indexes of the set bits, delta encoded as varints</li>
+ * <li>{@link #RUN_LENGTH}: the runs of set bits as (gap, length) varint pairs</li>
+ * </ul>
+ * </p>
+ */
 public class BitSetSerializer extends Serializer<BitSet> {
 
+    static final int DENSE = 0;
+    static final int SPARSE = 1;
+    static final int RUN_LENGTH = 2;
+
     @Override
     public BitSet copy(final Kryo kryo, final BitSet original) {
-        final BitSet result = new BitSet();
-        final int length = original.length();
-        for(int i = 0; i < length; i++) {
-            result.set(i, original.get(i));
-        }
-        return result;
+        return (BitSet) original.clone();
     }
 
     @Override
     public void write(final Kryo kryo, final Output output, final BitSet bitSet) {
         final int len = bitSet.length();
+        final int mode = chooseMode(bitSet, len);
 
-        output.writeInt(len, true);
+        output.writeVarInt(len, true);
+        output.writeByte(mode);
 
-        for(int i = 0; i < len; i++) {
-            output.writeBoolean(bitSet.get(i));
+        switch (mode) {
+            case SPARSE:
+                writeSparse(output, bitSet);
+                break;
+            case RUN_LENGTH:
+                writeRunLength(output, bitSet);
+                break;
+            default:
+                final long[] words = bitSet.toLongArray();
+                output.writeLongs(words, 0, words.length);
         }
     }
 
     @Override
     public BitSet read(final Kryo kryo, final Input input, final Class<? extends BitSet> bitSetClass) {
-        final int len = input.readInt(true);
-        final BitSet ret = new BitSet(len);
+        final int len = input.readVarInt(true);
+        final int mode = input.readByte();
+        final int wordCount = wordCount(len);
+
+        switch (mode) {
+            case DENSE:
+                return BitSet.valueOf(input.readLongs(wordCount));
+            case SPARSE:
+                return readSparse(input, wordCount);
+            case RUN_LENGTH:
+                return readRunLength(input, len);
+            default:
+                throw new IllegalStateException("Unknown BitSet encoding: " + mode);
+        }
+    }
+
+    private static void writeSparse(final Output output, final BitSet bitSet) {
+        output.writeVarInt(bitSet.cardinality(), true);
+        int previous = 0;
+        for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+            output.writeVarInt(i - previous, true);
+            previous = i;
+        }
+    }
 
-        for(int i = 0; i < len; i++) {
-            ret.set(i, input.readBoolean());
+    private static BitSet readSparse(final Input input, final int wordCount) {
+        final long[] words = new long[wordCount];
+        final int cardinality = input.readVarInt(true);
+        int index = 0;
+        for (int i = 0; i < cardinality; i++) {
+            index += input.readVarInt(true);
+            words[index >>> 6] |= 1L << index;
         }
+        return BitSet.valueOf(words);
+    }
+
+    private static void writeRunLength(final Output output, final BitSet bitSet) {
+        output.writeVarInt(countRuns(bitSet, Integer.MAX_VALUE), true);
+        int end = 0;
+        for (int start = bitSet.nextSetBit(0); start >= 0; start = bitSet.nextSetBit(end)) {
+            final int runEnd = bitSet.nextClearBit(start);
+            output.writeVarInt(start - end, true);
+            output.writeVarInt(runEnd - start, true);
+            end = runEnd;
+        }
+    }
+
+    private static BitSet readRunLength(final Input input, final int len) {
+        final BitSet result = new BitSet(len);
+        final int runs = input.readVarInt(true);
+        int end = 0;
+        for (int i = 0; i < runs; i++) {
+            final int start = end + input.readVarInt(true);
+            end = start + input.readVarInt(true);
+            result.set(start, end);
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the encoded size of the different modes and returns the smallest one.
+     */
+    static int chooseMode(final BitSet bitSet, final int len) {
+        final int denseSize = wordCount(len) * 8;
+        final int cardinality = bitSet.cardinality();
+        if (cardinality == 0) {
+            return DENSE;
+        }
+        final int sparseSize = cardinality * varIntLength(len / cardinality);
+
+        // stop counting runs as soon as run-length can't beat the other modes anymore
+        final int bestSize = Math.min(denseSize, sparseSize);
+        final int maxRuns = bestSize / 2;
+        final int runs = countRuns(bitSet, maxRuns + 1);
+        if (runs <= maxRuns) {
+            final int runLengthSize = 2 * runs * varIntLength(len / (2 * runs));
+            if (runLengthSize < bestSize) {
+                return RUN_LENGTH;
+            }
+        }
+        return sparseSize < denseSize ? SPARSE : DENSE;
+    }
+
+    private static int countRuns(final BitSet bitSet, final int limit) {
+        int runs = 0;
+        for (int i = bitSet.nextSetBit(0); i >= 0 && runs < limit; i = bitSet.nextSetBit(bitSet.nextClearBit(i))) {
+            runs++;
+        }
+        return runs;
+    }
+
+    private static int wordCount(final int len) {
+        return (len + 63) >>> 6;
+    }
 
-        return ret;
+    private static int varIntLength(final int value) {
+        if (value >>> 7 == 0) return 1;
+        if (value >>> 14 == 0) return 2;
+        if (value >>> 21 == 0) return 3;
+        if (value >>> 28 == 0) return 4;
+        return 5;
     }
 }
@@ -16,20 +16,41 @@
  */
 package de.javakaffee.kryoserializers;
 
+import static com.esotericsoftware.minlog.Log.TRACE;
+import static com.esotericsoftware.minlog.Log.trace;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.util.ObjectMap;
 
 /**
  * A {@link CompatibleFieldSerializer} specialization that uses sun's {@link sun.reflect.ReflectionFactory} to create
  * new instances for classes without a default constructor (via reuse of
  * {@link KryoReflectionFactorySupport#newInstanceFromReflectionFactory(Class)}).
+ * <p>
+ * The field names written for a class (the schema) are resolved against the fields of the
+ * class only once per distinct schema, later reads of the same schema (e.g. in following object
+ * graphs) just look up the resolved fields by the schema's field names.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 @SuppressWarnings("restriction")
 public class CompatibleFieldSerializerReflectionFactorySupport extends CompatibleFieldSerializer<Object> {
 
+    /**
+     * The max number of distinct schemas that are cached, further schemas are resolved on each read.
+     */
+    static final int MAX_CACHED_SCHEMAS = 64;
+
+    private final ConcurrentMap<Schema, CachedField[]> _resolvedSchemas = new ConcurrentHashMap<Schema, CachedField[]>();
+    private volatile CachedField[] _resolvedFor;
+
     /**
      * Creates a new instance.
      * @param kryo the kryo instance that is passed to {@link CompatibleFieldSerializer#CompatibleFieldSerializer(Kryo, Class)}.
@@ -44,5 +65,80 @@ public class CompatibleFieldSerializerReflectionFactorySupport extends Compatibl
     public Object create(final Kryo kryo, final Input input, @SuppressWarnings("rawtypes") final Class type) {
         return KryoReflectionFactorySupport.newInstanceFromReflectionFactory( type );
     }
-    
+
+    @Override
+    public Object read( final Kryo kryo, final Input input, final Class<? extends Object> type ) {
+        // The super implementation reads and resolves the schema only if it's not yet stored in the graph
+        // context, so if we read the schema before we can pass the resolved fields via the graph context.
+        // The schema must be read exactly like CompatibleFieldSerializer (5.0.0-RC1) does it, see the test.
+        final ObjectMap<Object, Object> graphContext = GraphDictionary.graphContext( kryo );
+        if ( graphContext.get( this ) == null ) {
+            graphContext.put( this, readSchema( input ) );
+        }
+        return super.read( kryo, input, type );
+    }
+
+    private CachedField[] readSchema( final Input input ) {
+        final int length = input.readVarInt( true );
+        final String[] names = new String[length];
+        for ( int i = 0; i < length; i++ ) {
+            names[i] = input.readString();
+        }
+
+        final CachedField[] fields = getFields();
+        if ( _resolvedFor != fields ) {
+            // the fields were rebuilt or removed
+            _resolvedSchemas.clear();
+            _resolvedFor = fields;
+        }
+        final Schema schema = new Schema( names );
+        CachedField[] result = _resolvedSchemas.get( schema );
+        if ( result == null ) {
+            result = resolve( names, fields );
+            if ( _resolvedSchemas.size() < MAX_CACHED_SCHEMAS ) {
+                _resolvedSchemas.putIfAbsent( schema, result );
+            }
+        }
+        return result;
+    }
+
+    private CachedField[] resolve( final String[] names, final CachedField[] fields ) {
+        final CachedField[] result = new CachedField[names.length];
+        outer:
+        for ( int i = 0; i < names.length; i++ ) {
+            for ( final CachedField field : fields ) {
+                if ( field.getName().equals( names[i] ) ) {
+                    result[i] = field;
+                    continue outer;
+                }
+            }
+            if ( TRACE ) trace( "kryo", "Unknown field will be skipped: " + names[i] );
+        }
+        return result;
+    }
+
+    /**
+     * The field names of a serialized class, used as key for the resolved fields.
+     */
+    private static final class Schema {
+
+        private final String[] _names;
+        private final int _hashCode;
+
+        Schema( final String[] names ) {
+            _names = names;
+            _hashCode = Arrays.hashCode( names );
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+
+        @Override
+        public boolean equals( final Object obj ) {
+            return obj instanceof Schema && Arrays.equals( _names, ( (Schema) obj )._names );
+        }
+    }
+
 }
\ No newline at end of file
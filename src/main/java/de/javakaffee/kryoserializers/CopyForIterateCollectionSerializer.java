@@ -18,9 +18,11 @@ package de.javakaffee.kryoserializers;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.CollectionSerializer;
 
@@ -32,15 +34,156 @@ import com.esotericsoftware.kryo.serializers.CollectionSerializer;
  * of concurrent modification exceptions, as even during taking the copy the
  * collection might be modified by another thread.
  * </p>
+ * <p>
+ * In copy free mode (see {@link #CopyForIterateCollectionSerializer(boolean)}) the collections of
+ * <code>java.util.concurrent</code> (whose iterators are weakly consistent or work on a snapshot)
+ * are iterated directly instead. As their size might change during iteration, the elements are
+ * written in chunks, each preceded by its element count. If the output is not backed by a stream,
+ * all elements are written as one chunk whose count is backpatched after the iteration, otherwise
+ * the elements are collected into a chunk buffer. Other collections are copied to an array. Like
+ * in the default mode, the elements are written with the configured element serializer or the
+ * serializer of the (final) generic element type if available.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 public class CopyForIterateCollectionSerializer extends CollectionSerializer {
-    
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final boolean _copyFree;
+
+    public CopyForIterateCollectionSerializer() {
+        this( false );
+    }
+
+    /**
+     * @param copyFree if <code>true</code>, concurrent collections are iterated directly without taking a copy.
+     */
+    public CopyForIterateCollectionSerializer( final boolean copyFree ) {
+        _copyFree = copyFree;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void write( final Kryo kryo, final Output output, @SuppressWarnings("rawtypes") final Collection object ) {
-        super.write( kryo, output, new ArrayList<Object>(object));
+        if ( !_copyFree ) {
+            super.write( kryo, output, new ArrayList<Object>(object));
+            return;
+        }
+        final Serializer<?> elementSerializer = getElementSerializer( kryo );
+        if ( !isWeaklyConsistent( object ) ) {
+            final Object[] elements = object.toArray();
+            writeChunk( kryo, output, elementSerializer, elements, elements.length, true );
+        } else if ( output.getOutputStream() == null ) {
+            writeBackpatched( kryo, output, elementSerializer, object );
+        } else {
+            writeChunked( kryo, output, elementSerializer, object );
+        }
+        kryo.getGenerics().popGenericType();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Collection<?> read( final Kryo kryo, final Input input, @SuppressWarnings("rawtypes") final Class type ) {
+        if ( !_copyFree ) {
+            return super.read( kryo, input, type );
+        }
+        Class<?> elementClass = getElementClass();
+        Serializer<?> elementSerializer = getElementSerializer();
+        if ( elementSerializer == null ) {
+            final Class<?> genericClass = kryo.getGenerics().nextGenericClass();
+            if ( genericClass != null && kryo.isFinal( genericClass ) ) {
+                elementSerializer = kryo.getSerializer( genericClass );
+                elementClass = genericClass;
+            }
+        }
+        int header = input.readInt();
+        final Collection<Object> result = create( kryo, input, type, header >>> 1 );
+        kryo.reference( result );
+        while ( true ) {
+            for ( int i = header >>> 1; i > 0; i-- ) {
+                result.add( elementSerializer != null
+                        ? kryo.readObjectOrNull( input, elementClass, elementSerializer )
+                        : kryo.readClassAndObject( input ) );
+            }
+            if ( ( header & 1 ) != 0 ) {
+                kryo.getGenerics().popGenericType();
+                return result;
+            }
+            header = input.readInt();
+        }
+    }
+
+    /**
+     * Returns the configured element serializer or the serializer of the generic element type,
+     * if that's final. Must be resolved in the same way as in {@link #read(Kryo, Input, Class)}.
+     */
+    private Serializer<?> getElementSerializer( final Kryo kryo ) {
+        final Serializer<?> result = getElementSerializer();
+        if ( result != null ) {
+            return result;
+        }
+        final Class<?> genericClass = kryo.getGenerics().nextGenericClass();
+        return genericClass != null && kryo.isFinal( genericClass ) ? kryo.getSerializer( genericClass ) : null;
+    }
+
+    private static boolean isWeaklyConsistent( final Collection<?> collection ) {
+        return collection.getClass().getName().startsWith( "java.util.concurrent." );
+    }
+
+    /**
+     * Writes all elements as the last chunk, the count is written after the iteration.
+     */
+    private static void writeBackpatched( final Kryo kryo, final Output output, final Serializer<?> elementSerializer,
+            final Collection<?> collection ) {
+        final int headerPosition = output.position();
+        output.writeInt( 0 );
+        int count = 0;
+        for ( final Object element : collection ) {
+            writeElement( kryo, output, elementSerializer, element );
+            count++;
+        }
+        final int end = output.position();
+        output.setPosition( headerPosition );
+        output.writeInt( count << 1 | 1 );
+        output.setPosition( end );
+    }
+
+    /**
+     * Collects the elements into a chunk buffer and writes them when the buffer is full.
+     */
+    private static void writeChunked( final Kryo kryo, final Output output, final Serializer<?> elementSerializer,
+            final Collection<?> collection ) {
+        // the size is only a hint for a concurrently modified collection, at least 1 is needed to make progress
+        final Object[] buffer = new Object[Math.max( 1, Math.min( collection.size(), CHUNK_SIZE ) )];
+        final Iterator<?> iterator = collection.iterator();
+        boolean last;
+        do {
+            int count = 0;
+            while ( count < buffer.length && iterator.hasNext() ) {
+                buffer[count++] = iterator.next();
+            }
+            last = !iterator.hasNext();
+            writeChunk( kryo, output, elementSerializer, buffer, count, last );
+        } while ( !last );
+    }
+
+    private static void writeChunk( final Kryo kryo, final Output output, final Serializer<?> elementSerializer,
+            final Object[] elements, final int count, final boolean last ) {
+        output.writeInt( count << 1 | ( last ? 1 : 0 ) );
+        for ( int i = 0; i < count; i++ ) {
+            writeElement( kryo, output, elementSerializer, elements[i] );
+        }
+    }
+
+    @SuppressWarnings( { "rawtypes", "unchecked" } )
+    private static void writeElement( final Kryo kryo, final Output output, final Serializer elementSerializer, final Object element ) {
+        if ( elementSerializer != null ) {
+            kryo.writeObjectOrNull( output, element, elementSerializer );
+        } else {
+            kryo.writeClassAndObject( output, element );
+        }
     }
 
 }
@@ -16,14 +16,18 @@
  */
 package de.javakaffee.kryoserializers;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.MapSerializer;
+import com.esotericsoftware.kryo.util.Generics.GenericType;
 
 /**
  * A kryo {@link Serializer} that creates a copy of the source map for writing object data.
@@ -33,14 +37,52 @@ import com.esotericsoftware.kryo.serializers.MapSerializer;
  * of concurrent modification exceptions, as even during taking the copy the
  * map might be modified by another thread.
  * </p>
+ * <p>
+ * In copy free mode (see {@link #CopyForIterateMapSerializer(boolean)}) the maps of
+ * <code>java.util.concurrent</code> (whose iterators are weakly consistent) are iterated directly
+ * instead. As their size might change during iteration, the entries are written in chunks, each
+ * preceded by its entry count. If the output is not backed by a stream, all entries are written as
+ * one chunk whose count is backpatched after the iteration, otherwise (as already flushed data cannot
+ * be backpatched) the entries are collected into a chunk buffer of bounded size. Other maps are
+ * copied to an array of keys and values, written as one chunk. Like in the default mode, keys and
+ * values are written with the configured key/value serializers or the serializers of the (final)
+ * generic key/value types if available.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 public class CopyForIterateMapSerializer extends MapSerializer {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final boolean _copyFree;
+
+    public CopyForIterateMapSerializer() {
+        this( false );
+    }
+
+    /**
+     * @param copyFree if <code>true</code>, maps are written without creating a copy of the map.
+     */
+    public CopyForIterateMapSerializer( final boolean copyFree ) {
+        _copyFree = copyFree;
+    }
     
     @SuppressWarnings("unchecked")
     @Override
     public void write( final Kryo kryo, final Output output, @SuppressWarnings("rawtypes") final Map object ) {
+        if ( _copyFree ) {
+            final EntrySerializers serializers = getEntrySerializers( kryo );
+            if ( !isWeaklyConsistent( object ) ) {
+                writeSnapshot( kryo, output, serializers, object );
+            } else if ( output.getOutputStream() == null ) {
+                writeBackpatched( kryo, output, serializers, object );
+            } else {
+                writeChunked( kryo, output, serializers, object );
+            }
+            kryo.getGenerics().popGenericType();
+            return;
+        }
         final Map<?, ?> map;
         // we only need special support for linked hash map, as SortedMaps will
         // recreate correct sorting during deserialization...
@@ -53,4 +95,190 @@ public class CopyForIterateMapSerializer extends MapSerializer {
         super.write( kryo, output, map );
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<?, ?> read( final Kryo kryo, final Input input, @SuppressWarnings("rawtypes") final Class type ) {
+        if ( !_copyFree ) {
+            return super.read( kryo, input, type );
+        }
+        final EntrySerializers serializers = getEntrySerializers( kryo );
+        int header = input.readInt();
+        final Map<Object, Object> result = create( kryo, input, type, header >>> 1 );
+        kryo.reference( result );
+        while ( true ) {
+            for ( int i = header >>> 1; i > 0; i-- ) {
+                final Object key = serializers.readKey( kryo, input );
+                result.put( key, serializers.readValue( kryo, input ) );
+            }
+            if ( ( header & 1 ) != 0 ) {
+                kryo.getGenerics().popGenericType();
+                return result;
+            }
+            header = input.readInt();
+        }
+    }
+
+    /**
+     * Resolves the configured key and value serializers, or the serializers of the generic key and value
+     * types if these are final, like {@link MapSerializer} does it.
+     */
+    private EntrySerializers getEntrySerializers( final Kryo kryo ) {
+        final EntrySerializers result = new EntrySerializers( kryo.getGenerics().nextGenericTypes() );
+        result.keyClass = getKeyClass();
+        result.keySerializer = getKeySerializer();
+        result.valueClass = getValueClass();
+        result.valueSerializer = getValueSerializer();
+        if ( result.genericTypes != null ) {
+            if ( result.keySerializer == null ) {
+                final Class<?> genericClass = result.genericTypes[0].resolve( kryo.getGenerics() );
+                if ( genericClass != null && kryo.isFinal( genericClass ) ) {
+                    result.keySerializer = kryo.getSerializer( genericClass );
+                    result.keyClass = genericClass;
+                }
+            }
+            if ( result.valueSerializer == null ) {
+                final Class<?> genericClass = result.genericTypes[1].resolve( kryo.getGenerics() );
+                if ( genericClass != null && kryo.isFinal( genericClass ) ) {
+                    result.valueSerializer = kryo.getSerializer( genericClass );
+                    result.valueClass = genericClass;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isWeaklyConsistent( final Map<?, ?> map ) {
+        return map.getClass().getName().startsWith( "java.util.concurrent." );
+    }
+
+    /**
+     * Writes all entries as the last chunk while iterating, the count is written after the iteration.
+     */
+    private static void writeBackpatched( final Kryo kryo, final Output output, final EntrySerializers serializers,
+            final Map<?, ?> map ) {
+        final int headerPosition = output.position();
+        output.writeInt( 0 );
+        int size = 0;
+        for ( final Map.Entry<?, ?> entry : map.entrySet() ) {
+            serializers.writeKey( kryo, output, entry.getKey() );
+            serializers.writeValue( kryo, output, entry.getValue() );
+            size++;
+        }
+        final int end = output.position();
+        output.setPosition( headerPosition );
+        output.writeInt( size << 1 | 1 );
+        output.setPosition( end );
+    }
+
+    /**
+     * Collects keys and values into a chunk buffer and writes them when the buffer is full.
+     */
+    private static void writeChunked( final Kryo kryo, final Output output, final EntrySerializers serializers,
+            final Map<?, ?> map ) {
+        // the size is only a hint for a concurrently modified map, at least 1 entry is needed to make progress
+        final Object[] buffer = new Object[2 * Math.max( 1, Math.min( map.size(), CHUNK_SIZE ) )];
+        final Iterator<? extends Map.Entry<?, ?>> iterator = map.entrySet().iterator();
+        boolean last;
+        do {
+            int length = 0;
+            while ( length < buffer.length && iterator.hasNext() ) {
+                final Map.Entry<?, ?> entry = iterator.next();
+                buffer[length++] = entry.getKey();
+                buffer[length++] = entry.getValue();
+            }
+            last = !iterator.hasNext();
+            writeChunk( kryo, output, serializers, buffer, length, last );
+        } while ( !last );
+    }
+
+    /**
+     * Copies keys and values into an array and writes them as the last chunk.
+     */
+    private static void writeSnapshot( final Kryo kryo, final Output output, final EntrySerializers serializers,
+            final Map<?, ?> map ) {
+        Object[] buffer = new Object[map.size() * 2];
+        int length = 0;
+        for ( final Map.Entry<?, ?> entry : map.entrySet() ) {
+            if ( length == buffer.length ) {
+                // the map has grown concurrently
+                buffer = Arrays.copyOf( buffer, Math.max( 16, buffer.length * 2 ) );
+            }
+            buffer[length++] = entry.getKey();
+            buffer[length++] = entry.getValue();
+        }
+        writeChunk( kryo, output, serializers, buffer, length, true );
+    }
+
+    private static void writeChunk( final Kryo kryo, final Output output, final EntrySerializers serializers,
+            final Object[] keysAndValues, final int length, final boolean last ) {
+        output.writeInt( length / 2 << 1 | ( last ? 1 : 0 ) );
+        for ( int i = 0; i < length; i += 2 ) {
+            serializers.writeKey( kryo, output, keysAndValues[i] );
+            serializers.writeValue( kryo, output, keysAndValues[i + 1] );
+        }
+    }
+
+    /**
+     * The classes, serializers and generic types of keys and values resolved for one map.
+     * Keys and values without serializer are written with their class.
+     */
+    private static final class EntrySerializers {
+
+        final GenericType[] genericTypes;
+        Class<?> keyClass;
+        Serializer<?> keySerializer;
+        Class<?> valueClass;
+        Serializer<?> valueSerializer;
+
+        EntrySerializers( final GenericType[] genericTypes ) {
+            this.genericTypes = genericTypes;
+        }
+
+        void writeKey( final Kryo kryo, final Output output, final Object key ) {
+            write( kryo, output, keySerializer, 0, key );
+        }
+
+        void writeValue( final Kryo kryo, final Output output, final Object value ) {
+            write( kryo, output, valueSerializer, 1, value );
+        }
+
+        Object readKey( final Kryo kryo, final Input input ) {
+            return read( kryo, input, keyClass, keySerializer, 0 );
+        }
+
+        Object readValue( final Kryo kryo, final Input input ) {
+            return read( kryo, input, valueClass, valueSerializer, 1 );
+        }
+
+        @SuppressWarnings( { "rawtypes", "unchecked" } )
+        private void write( final Kryo kryo, final Output output, final Serializer serializer, final int genericIndex,
+                final Object object ) {
+            if ( genericTypes != null ) {
+                kryo.getGenerics().pushGenericType( genericTypes[genericIndex] );
+            }
+            if ( serializer != null ) {
+                kryo.writeObjectOrNull( output, object, serializer );
+            } else {
+                kryo.writeClassAndObject( output, object );
+            }
+            if ( genericTypes != null ) {
+                kryo.getGenerics().popGenericType();
+            }
+        }
+
+        private Object read( final Kryo kryo, final Input input, final Class<?> type, final Serializer<?> serializer,
+                final int genericIndex ) {
+            if ( genericTypes != null ) {
+                kryo.getGenerics().pushGenericType( genericTypes[genericIndex] );
+            }
+            final Object result = serializer != null
+                    ? kryo.readObjectOrNull( input, type, serializer )
+                    : kryo.readClassAndObject( input );
+            if ( genericTypes != null ) {
+                kryo.getGenerics().popGenericType();
+            }
+            return result;
+        }
+    }
+
 }
@@ -16,7 +16,11 @@
  */
 package de.javakaffee.kryoserializers;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.Date;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -36,18 +40,67 @@ import com.esotericsoftware.kryo.io.Output;
  *      }
  *  };
  * </pre></code>
+ * <p>
+ * {@link Date}, {@link java.sql.Date}, {@link Time} and {@link Timestamp} are created directly,
+ * other subclasses via a {@link MethodHandle} for their <code>long</code> constructor.
+ * For {@link Timestamp}s the nanos are preserved.
+ * </p>
+ * <p>
+ * In epoch delta mode (see {@link #DateSerializer(Class, boolean)}) only the first date of an
+ * object graph is written with its full time, all other dates are written as the difference
+ * to this base time, so that dates within the same time window take only a few bytes.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 public class DateSerializer extends Serializer<Date> {
 
-    private final Constructor<? extends Date> _constructor;
+    private static final int DATE = 0;
+    private static final int SQL_DATE = 1;
+    private static final int TIME = 2;
+    private static final int TIMESTAMP = 3;
+    private static final int OTHER = 4;
+
+    /** The key of the base time in the graph context, shared by all date serializers. */
+    private static final Object BASE_TIME_KEY = new Object();
+
+    private final int _type;
+    private final boolean _timestamp;
+    private final boolean _epochDelta;
+    private final MethodHandle _constructor;
 
     public DateSerializer(final Class<? extends Date> clazz) {
-        try {
-            _constructor = clazz.getConstructor(long.class);
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
+        this( clazz, false );
+    }
+
+    /**
+     * @param clazz the date class to serialize.
+     * @param epochDelta if <code>true</code> dates are written relative to the first date written in an
+     *          object graph. Must be the same for all date serializers of a kryo instance.
+     */
+    public DateSerializer(final Class<? extends Date> clazz, final boolean epochDelta) {
+        _epochDelta = epochDelta;
+        _timestamp = Timestamp.class.isAssignableFrom( clazz );
+        if ( clazz == Date.class ) {
+            _type = DATE;
+        } else if ( clazz == java.sql.Date.class ) {
+            _type = SQL_DATE;
+        } else if ( clazz == Time.class ) {
+            _type = TIME;
+        } else if ( clazz == Timestamp.class ) {
+            _type = TIMESTAMP;
+        } else {
+            _type = OTHER;
+        }
+        if ( _type == OTHER ) {
+            try {
+                _constructor = MethodHandles.publicLookup().findConstructor( clazz, MethodType.methodType( void.class, long.class ) )
+                        .asType( MethodType.methodType( Date.class, long.class ) );
+            } catch ( final Exception e ) {
+                throw new RuntimeException( e );
+            }
+        } else {
+            _constructor = null;
         }
     }
 
@@ -56,11 +109,16 @@ public class DateSerializer extends Serializer<Date> {
      */
     @Override
     public Date read(final Kryo kryo, final Input input, final Class<? extends Date> type) {
-        try {
-            return _constructor.newInstance(input.readLong(true));
-        } catch (final Exception e) {
-            throw new RuntimeException( e );
+        final long time = readTime( kryo, input );
+        final Date result = newInstance( time );
+        if ( _timestamp ) {
+            final int subMillisNanos = input.readVarInt( true );
+            if ( subMillisNanos != 0 ) {
+                final Timestamp timestamp = (Timestamp) result;
+                timestamp.setNanos( timestamp.getNanos() + subMillisNanos );
+            }
         }
+        return result;
     }
 
     /**
@@ -68,7 +126,11 @@ public class DateSerializer extends Serializer<Date> {
      */
     @Override
     public void write(final Kryo kryo, final Output output, final Date obj) {
-        output.writeLong(obj.getTime(), true);
+        writeTime( kryo, output, obj.getTime() );
+        if ( _timestamp ) {
+            // the millis are already part of the time
+            output.writeVarInt( ((Timestamp) obj).getNanos() % 1000000, true );
+        }
     }
 
     @Override
@@ -76,4 +138,50 @@ public class DateSerializer extends Serializer<Date> {
         return (Date) original.clone();
     }
 
+    private void writeTime( final Kryo kryo, final Output output, final long time ) {
+        if ( _epochDelta ) {
+            final Long baseTime = (Long) GraphDictionary.graphContext( kryo ).get( BASE_TIME_KEY );
+            if ( baseTime != null ) {
+                output.writeVarLong( time - baseTime, false );
+                return;
+            }
+            GraphDictionary.graphContext( kryo ).put( BASE_TIME_KEY, time );
+        }
+        output.writeVarLong( time, true );
+    }
+
+    private long readTime( final Kryo kryo, final Input input ) {
+        if ( _epochDelta ) {
+            final Long baseTime = (Long) GraphDictionary.graphContext( kryo ).get( BASE_TIME_KEY );
+            if ( baseTime != null ) {
+                return baseTime + input.readVarLong( false );
+            }
+            final long time = input.readVarLong( true );
+            GraphDictionary.graphContext( kryo ).put( BASE_TIME_KEY, time );
+            return time;
+        }
+        return input.readVarLong( true );
+    }
+
+    private Date newInstance( final long time ) {
+        switch ( _type ) {
+            case DATE:
+                return new Date( time );
+            case SQL_DATE:
+                return new java.sql.Date( time );
+            case TIME:
+                return new Time( time );
+            case TIMESTAMP:
+                return new Timestamp( time );
+            default:
+                try {
+                    return (Date) _constructor.invokeExact( time );
+                } catch ( final RuntimeException e ) {
+                    throw e;
+                } catch ( final Throwable t ) {
+                    throw new RuntimeException( t );
+                }
+        }
+    }
+
 }
@@ -19,32 +19,43 @@ package de.javakaffee.kryoserializers;
 import static com.esotericsoftware.minlog.Log.TRACE;
 import static com.esotericsoftware.minlog.Log.trace;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
 import java.util.EnumMap;
 import java.util.Map;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 /**
  * A serializer for {@link EnumMap}s.
+ * <p>
+ * The keys are written either as a presence bitmap over the ordinals of the key type (if the map is
+ * dense enough that the bitmap needs at most one word per entry) or as one ordinal per entry. The number
+ * of bitmap words (<code>0</code> for ordinals) is written, so that the reader does not depend on the
+ * number of enum constants it knows. If all
+ * values share the same class, this class is written once and the values are written without class
+ * information.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 public class EnumMapSerializer extends Serializer<EnumMap<? extends Enum<?>, ?>> {
     
-    private static final Field TYPE_FIELD;
-    
-    static {
-        try {
-            TYPE_FIELD = EnumMap.class.getDeclaredField( "keyType" );
-            TYPE_FIELD.setAccessible( true );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( "The EnumMap class seems to have changed, could not access expected field.", e );
+    private static final MethodHandle KEY_TYPE_GETTER = FieldAccessor.getter( FieldAccessor.getField( EnumMap.class, "keyType" ) );
+
+    /**
+     * The enum constants per key type, {@link Class#getEnumConstants()} returns a new copy on each invocation.
+     */
+    private static final ClassValue<Enum<?>[]> ENUM_CONSTANTS = new ClassValue<Enum<?>[]>() {
+        @Override
+        protected Enum<?>[] computeValue( final Class<?> type ) {
+            return (Enum<?>[]) type.getEnumConstants();
         }
-    }
+    };
 
     // Workaround reference reading, this should be removed sometimes. See also
     // https://groups.google.com/d/msg/kryo-users/Eu5V4bxCfws/k-8UQ22y59AJ
@@ -76,35 +87,141 @@ public class EnumMapSerializer extends Serializer<EnumMap<? extends Enum<?>, ?>>
         kryo.reference(FAKE_REFERENCE);
         final EnumMap<? extends Enum<?>, ?> result = create(kryo, input, type);
         final Class<Enum<?>> keyType = getKeyType( result );
-        final Enum<?>[] enumConstants = keyType.getEnumConstants();
+        final Enum<?>[] enumConstants = ENUM_CONSTANTS.get( keyType );
         final EnumMap rawResult = result;
         final int size = input.readInt(true);
-        for ( int i = 0; i < size; i++ ) {
-            final int ordinal = input.readVarInt(true);
-            final Enum<?> key = enumConstants[ordinal];
-            final Object value = kryo.readClassAndObject( input );
-            rawResult.put( key, value );
+        if ( size == 0 ) {
+            return result;
+        }
+        final Registration valueRegistration = kryo.readClass( input );
+        final Serializer valueSerializer = valueRegistration != null ? valueRegistration.getSerializer() : null;
+        final Class valueType = valueRegistration != null ? valueRegistration.getType() : null;
+        final int wordCount = input.readVarInt( true );
+        if ( wordCount > 0 ) {
+            final long[] words = new long[wordCount];
+            for ( int i = 0; i < words.length; i++ ) {
+                words[i] = input.readVarLong( true );
+            }
+            for ( int i = 0; i < words.length; i++ ) {
+                for ( long word = words[i]; word != 0; word &= word - 1 ) {
+                    final Enum<?> key = getKey( enumConstants, ( i << 6 ) + Long.numberOfTrailingZeros( word ) );
+                    rawResult.put( key, readValue( kryo, input, valueType, valueSerializer ) );
+                }
+            }
+        }
+        else {
+            for ( int i = 0; i < size; i++ ) {
+                final Enum<?> key = getKey( enumConstants, input.readVarInt(true) );
+                rawResult.put( key, readValue( kryo, input, valueType, valueSerializer ) );
+            }
         }
         return result;
     }
 
+    private static Enum<?> getKey( final Enum<?>[] enumConstants, final int ordinal ) {
+        if ( ordinal >= enumConstants.length ) {
+            throw new KryoException( "Invalid ordinal " + ordinal + " for enum "
+                    + enumConstants[0].getDeclaringClass().getName() + " with " + enumConstants.length + " constants" );
+        }
+        return enumConstants[ordinal];
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Object readValue( final Kryo kryo, final Input input, final Class valueType, final Serializer valueSerializer ) {
+        return valueType != null
+                ? kryo.readObjectOrNull( input, valueType, valueSerializer )
+                : kryo.readClassAndObject( input );
+    }
+
     @Override
+    @SuppressWarnings({ "rawtypes", "unchecked" })
     public void write(final Kryo kryo, final Output output, final EnumMap<? extends Enum<?>, ?> map) {
-        kryo.writeClass( output, getKeyType( map ) );
-        output.writeInt(map.size(), true);
-        for ( final Map.Entry<? extends Enum<?>,?> entry :  map.entrySet() ) {
-            output.writeVarInt(entry.getKey().ordinal(), true);
-            kryo.writeClassAndObject(output, entry.getValue());
+        final Class<Enum<?>> keyType = getKeyType( map );
+        kryo.writeClass( output, keyType );
+        final int size = map.size();
+        output.writeInt(size, true);
+        if ( size == 0 ) {
+            return;
+        }
+
+        final Class<?> valueType = getCommonValueType( map );
+        final Registration valueRegistration = kryo.writeClass( output, valueType );
+        final Serializer valueSerializer = valueRegistration != null ? valueRegistration.getSerializer() : null;
+
+        final int universeSize = ENUM_CONSTANTS.get( keyType ).length;
+        if ( isDense( universeSize, size ) ) {
+            final long[] words = new long[wordCount( universeSize )];
+            output.writeVarInt( words.length, true );
+            for ( final Enum<?> key : map.keySet() ) {
+                words[key.ordinal() >>> 6] |= 1L << key.ordinal();
+            }
+            for ( final long word : words ) {
+                output.writeVarLong( word, true );
+            }
+            for ( final Object value : map.values() ) {
+                writeValue( kryo, output, value, valueSerializer );
+            }
+        }
+        else {
+            output.writeVarInt( 0, true );
+            for ( final Map.Entry<? extends Enum<?>,?> entry :  map.entrySet() ) {
+                output.writeVarInt(entry.getKey().ordinal(), true);
+                writeValue( kryo, output, entry.getValue(), valueSerializer );
+            }
         }
         if ( TRACE ) trace( "kryo", "Wrote EnumMap: " + map );
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static void writeValue( final Kryo kryo, final Output output, final Object value, final Serializer valueSerializer ) {
+        if ( valueSerializer != null ) {
+            kryo.writeObjectOrNull( output, value, valueSerializer );
+        }
+        else {
+            kryo.writeClassAndObject( output, value );
+        }
+    }
+
+    /**
+     * Returns the class shared by all values of the given map, or <code>null</code> if the
+     * values have different classes or all values are <code>null</code>.
+     */
+    private static Class<?> getCommonValueType( final EnumMap<?, ?> map ) {
+        Class<?> result = null;
+        for ( final Object value : map.values() ) {
+            if ( value != null ) {
+                if ( result == null ) {
+                    result = value.getClass();
+                }
+                else if ( result != value.getClass() ) {
+                    return null;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the keys are written as presence bitmap (at most one bitmap word per entry)
+     * or as a list of ordinals.
+     */
+    private static boolean isDense( final int universeSize, final int size ) {
+        return wordCount( universeSize ) <= size;
+    }
+
+    private static int wordCount( final int universeSize ) {
+        return ( universeSize + 63 ) >>> 6;
+    }
+
     @SuppressWarnings("unchecked")
     private Class<Enum<?>> getKeyType( final EnumMap<?, ?> map ) {
+        if ( !map.isEmpty() ) {
+            return (Class<Enum<?>>) ( (Enum<?>) map.keySet().iterator().next() ).getDeclaringClass();
+        }
         try {
-            return (Class<Enum<?>>)TYPE_FIELD.get( map );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( "Could not access keys field.", e );
+            return (Class<Enum<?>>) (Object) KEY_TYPE_GETTER.invokeExact( (Object) map );
+        } catch ( final Throwable t ) {
+            throw FieldAccessor.rethrow( t );
         }
     }
 }
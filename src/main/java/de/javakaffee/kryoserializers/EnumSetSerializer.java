@@ -19,32 +19,50 @@ package de.javakaffee.kryoserializers;
 import static com.esotericsoftware.minlog.Log.TRACE;
 import static com.esotericsoftware.minlog.Log.trace;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.EnumSet;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 /**
  * A serializer for {@link EnumSet}s.
+ * <p>
+ * The elements are written as a bitmask over the ordinals of the element type: a single
+ * (variable length) long for sets of enums with up to 64 constants (<code>RegularEnumSet</code>),
+ * a <code>long[]</code> otherwise (<code>JumboEnumSet</code>). The set is rebuilt from the bitmask
+ * in bulk instead of adding its elements one by one.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 @SuppressWarnings( { "unchecked", "rawtypes" } )
 public class EnumSetSerializer extends Serializer<EnumSet<? extends Enum<?>>> {
     
-    private static final Field TYPE_FIELD;
-    
-    static {
-        try {
-            TYPE_FIELD = EnumSet.class.getDeclaredField( "elementType" );
-            TYPE_FIELD.setAccessible( true );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( "The EnumSet class seems to have changed, could not access expected field.", e );
+    private static final MethodHandle ELEMENT_TYPE_GETTER = FieldAccessor.getter( FieldAccessor.getField( EnumSet.class, "elementType" ) );
+
+    // The bitmask fields of RegularEnumSet/JumboEnumSet and their handles, null if not available
+    private static final Field REGULAR_ELEMENTS_FIELD = FieldAccessor.getFieldOrNull( "java.util.RegularEnumSet", "elements" );
+    private static final MethodHandle REGULAR_ELEMENTS_GETTER = FieldAccessor.getter( REGULAR_ELEMENTS_FIELD );
+    private static final MethodHandle REGULAR_ELEMENTS_SETTER = FieldAccessor.setter( REGULAR_ELEMENTS_FIELD );
+    private static final Field JUMBO_ELEMENTS_FIELD = FieldAccessor.getFieldOrNull( "java.util.JumboEnumSet", "elements" );
+    private static final MethodHandle JUMBO_ELEMENTS_GETTER = FieldAccessor.getter( JUMBO_ELEMENTS_FIELD );
+    private static final MethodHandle JUMBO_SIZE_SETTER = FieldAccessor.setter( FieldAccessor.getFieldOrNull( "java.util.JumboEnumSet", "size" ) );
+
+    /**
+     * The enum constants per element type, {@link Class#getEnumConstants()} returns a new copy on each invocation.
+     */
+    private static final ClassValue<Enum<?>[]> ENUM_CONSTANTS = new ClassValue<Enum<?>[]>() {
+        @Override
+        protected Enum<?>[] computeValue( final Class<?> type ) {
+            return (Enum<?>[]) type.getEnumConstants();
         }
-    }
+    };
 
     @Override
     public EnumSet<? extends Enum<?>> copy (final Kryo kryo, final EnumSet<? extends Enum<?>> original) {
@@ -55,30 +73,112 @@ public class EnumSetSerializer extends Serializer<EnumSet<? extends Enum<?>>> {
     public EnumSet read(final Kryo kryo, final Input input, final Class<? extends EnumSet<? extends Enum<?>>> type) {
         final Class<Enum> elementType = kryo.readClass( input ).getType();
         final EnumSet result = EnumSet.noneOf( elementType );
-        final int size = input.readInt(true);
-        final Enum<?>[] enumConstants = elementType.getEnumConstants();
-        for ( int i = 0; i < size; i++ ) {
-            result.add( enumConstants[input.readInt(true)] );
+        final int wordCount = input.readVarInt( true );
+        if ( wordCount == 1 ) {
+            setElements( result, checkElements( elementType, new long[] { input.readVarLong( true ) } ) );
+        }
+        else if ( wordCount > 1 ) {
+            setElements( result, checkElements( elementType, input.readLongs( wordCount ) ) );
         }
         return result;
     }
 
+    /**
+     * Verifies that the given bitmask only contains ordinals of the given element type, so that it
+     * can be stored in the set as is.
+     */
+    private static long[] checkElements( final Class<Enum> elementType, final long[] words ) {
+        final int universeSize = ENUM_CONSTANTS.get( elementType ).length;
+        if ( words.length > ( universeSize + 63 ) >>> 6 ) {
+            throw new KryoException( "Too many words (" + words.length + ") for the bitmask of enum "
+                    + elementType.getName() + " with " + universeSize + " constants" );
+        }
+        for ( int i = 0; i < words.length; i++ ) {
+            final int remaining = universeSize - ( i << 6 );
+            final long mask = remaining >= 64 ? -1L : ( 1L << remaining ) - 1;
+            if ( ( words[i] & ~mask ) != 0 ) {
+                throw new KryoException( "Invalid ordinals in the bitmask of enum " + elementType.getName()
+                        + " with " + universeSize + " constants: " + Arrays.toString( words ) );
+            }
+        }
+        return words;
+    }
+
     @Override
     public void write(final Kryo kryo, final Output output, final EnumSet<? extends Enum<?>> set) {
         kryo.writeClass( output, getElementType( set ) );
-        output.writeInt( set.size(), true );
-        for (final Enum item : set) {
-            output.writeInt(item.ordinal(), true);
+        final long[] words = getElements( set );
+        if ( words.length == 1 ) {
+            output.writeVarInt( 1, true );
+            output.writeVarLong( words[0], true );
+        }
+        else {
+            output.writeVarInt( words.length, true );
+            output.writeLongs( words, 0, words.length );
         }
 
         if ( TRACE ) trace( "kryo", "Wrote EnumSet: " + set );
     }
 
-    private Class<? extends Enum<?>> getElementType( final EnumSet<? extends Enum<?>> set ) {
+    private static Class<? extends Enum<?>> getElementType( final EnumSet<? extends Enum<?>> set ) {
         try {
-            return (Class)TYPE_FIELD.get( set );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( "Could not access keys field.", e );
+            return (Class) (Object) ELEMENT_TYPE_GETTER.invokeExact( (Object) set );
+        } catch ( final Throwable t ) {
+            throw FieldAccessor.rethrow( t );
+        }
+    }
+
+    /**
+     * Returns the bitmask of the given set, trailing empty words of a <code>JumboEnumSet</code> are
+     * included so that the result can be passed to {@link #setElements(EnumSet, long[])} as is.
+     */
+    private static long[] getElements( final EnumSet<? extends Enum<?>> set ) {
+        try {
+            if ( REGULAR_ELEMENTS_FIELD != null && REGULAR_ELEMENTS_FIELD.getDeclaringClass() == set.getClass() ) {
+                return new long[] { (long) REGULAR_ELEMENTS_GETTER.invokeExact( (Object) set ) };
+            }
+            if ( JUMBO_ELEMENTS_FIELD != null && JUMBO_ELEMENTS_FIELD.getDeclaringClass() == set.getClass() ) {
+                return (long[]) (Object) JUMBO_ELEMENTS_GETTER.invokeExact( (Object) set );
+            }
+        } catch ( final Throwable t ) {
+            throw FieldAccessor.rethrow( t );
+        }
+        long[] words = new long[1];
+        for ( final Enum<?> item : set ) {
+            final int ordinal = item.ordinal();
+            if ( ordinal >>> 6 >= words.length ) {
+                words = Arrays.copyOf( words, ( ordinal >>> 6 ) + 1 );
+            }
+            words[ordinal >>> 6] |= 1L << ordinal;
+        }
+        return words;
+    }
+
+    private static void setElements( final EnumSet set, final long[] words ) {
+        try {
+            if ( REGULAR_ELEMENTS_FIELD != null && REGULAR_ELEMENTS_FIELD.getDeclaringClass() == set.getClass() ) {
+                REGULAR_ELEMENTS_SETTER.invokeExact( (Object) set, words[0] );
+                return;
+            }
+            if ( JUMBO_ELEMENTS_FIELD != null && JUMBO_SIZE_SETTER != null
+                    && JUMBO_ELEMENTS_FIELD.getDeclaringClass() == set.getClass() ) {
+                final long[] elements = (long[]) (Object) JUMBO_ELEMENTS_GETTER.invokeExact( (Object) set );
+                int size = 0;
+                for ( int i = 0; i < words.length; i++ ) {
+                    elements[i] = words[i];
+                    size += Long.bitCount( words[i] );
+                }
+                JUMBO_SIZE_SETTER.invokeExact( (Object) set, size );
+                return;
+            }
+        } catch ( final Throwable t ) {
+            throw FieldAccessor.rethrow( t );
+        }
+        final Enum<?>[] enumConstants = ENUM_CONSTANTS.get( getElementType( set ) );
+        for ( int i = 0; i < words.length; i++ ) {
+            for ( long word = words[i]; word != 0; word &= word - 1 ) {
+                set.add( enumConstants[( i << 6 ) + Long.numberOfTrailingZeros( word )] );
+            }
         }
     }
 }
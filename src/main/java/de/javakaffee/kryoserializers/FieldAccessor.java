@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Martin Grotzke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an &quot;AS IS&quot; BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.javakaffee.kryoserializers;
+
+import static com.esotericsoftware.minlog.Log.TRACE;
+import static com.esotericsoftware.minlog.Log.trace;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+/**
+ * Resolves (private) fields of jdk (or library) classes that are used by the serializers to read
+ * and write their internal state, and creates {@link MethodHandle}s to access them.
+ * <p>
+ * The handles must be held in <code>static final</code> fields, only then the jit treats them as
+ * constants and compiles an access to a plain field access. Serializers that resolve their fields
+ * per instance should use the (accessible) {@link Field} directly, as handles held in instance fields
+ * are not faster than reflection.
+ * </p>
+ *
+ * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
+ */
+final class FieldAccessor {
+
+    private FieldAccessor() {
+    }
+
+    /**
+     * Returns the first existing field of the given names, made accessible.
+     *
+     * @param className the name of the class declaring the field.
+     * @param fieldNames the field names to try, e.g. because the field was renamed in some jdk version.
+     * @throws IllegalStateException if the class or none of the fields exists or the field cannot be made accessible.
+     */
+    static Field getField( final String className, final String ... fieldNames ) {
+        final Class<?> clazz;
+        try {
+            clazz = Class.forName( className );
+        } catch ( final ClassNotFoundException e ) {
+            throw new IllegalStateException( "Could not find class " + className, e );
+        }
+        return getField( clazz, fieldNames );
+    }
+
+    /**
+     * Returns the first existing field of the given names, made accessible.
+     *
+     * @param clazz the class declaring the field.
+     * @param fieldNames the field names to try, e.g. because the field was renamed in some jdk version.
+     * @throws IllegalStateException if none of the fields exists or the field cannot be made accessible.
+     */
+    static Field getField( final Class<?> clazz, final String ... fieldNames ) {
+        final Field field = findField( clazz, fieldNames );
+        try {
+            field.setAccessible( true );
+        } catch ( final RuntimeException e ) {
+            // InaccessibleObjectException since java 9, not available at compile time
+            throw new IllegalStateException( "Could not make " + field + " accessible, the package "
+                    + clazz.getPackage().getName() + " may have to be opened (via --add-opens).", e );
+        }
+        return field;
+    }
+
+    /**
+     * Same as {@link #getField(String, String...)} but returns <code>null</code> if the field
+     * does not exist or is not accessible.
+     */
+    static Field getFieldOrNull( final String className, final String ... fieldNames ) {
+        try {
+            return getField( className, fieldNames );
+        } catch ( final IllegalStateException e ) {
+            if ( TRACE ) trace( "kryo", e.getMessage() );
+            return null;
+        }
+    }
+
+    private static Field findField( final Class<?> clazz, final String ... fieldNames ) {
+        for ( final String fieldName : fieldNames ) {
+            try {
+                return clazz.getDeclaredField( fieldName );
+            } catch ( final NoSuchFieldException e ) {
+                // try the next one
+            }
+        }
+        throw new IllegalStateException( "The class " + clazz.getName() + " seems to have changed, could not find any of the fields "
+                + Arrays.toString( fieldNames ) );
+    }
+
+    /**
+     * Returns a getter for the given accessible field, with the type <code>(Object)Object</code>, or
+     * <code>(Object)int</code> etc. for primitive fields. Returns <code>null</code> for a <code>null</code> field.
+     */
+    static MethodHandle getter( final Field field ) {
+        if ( field == null ) {
+            return null;
+        }
+        try {
+            final Class<?> type = field.getType();
+            return MethodHandles.lookup().unreflectGetter( field )
+                    .asType( MethodType.methodType( type.isPrimitive() ? type : Object.class, Object.class ) );
+        } catch ( final IllegalAccessException e ) {
+            throw new IllegalStateException( "Could not create getter for " + field, e );
+        }
+    }
+
+    /**
+     * Returns a setter for the given accessible field, with the type <code>(Object,Object)void</code>, or
+     * <code>(Object,int)void</code> etc. for primitive fields. Returns <code>null</code> for a <code>null</code> field.
+     */
+    static MethodHandle setter( final Field field ) {
+        if ( field == null ) {
+            return null;
+        }
+        try {
+            final Class<?> type = field.getType();
+            return MethodHandles.lookup().unreflectSetter( field )
+                    .asType( MethodType.methodType( void.class, Object.class, type.isPrimitive() ? type : Object.class ) );
+        } catch ( final IllegalAccessException e ) {
+            throw new IllegalStateException( "Could not create setter for " + field, e );
+        }
+    }
+
+    /**
+     * Returns the given throwable (caught from a field handle) as unchecked exception, errors are rethrown.
+     */
+    static RuntimeException rethrow( final Throwable t ) {
+        if ( t instanceof RuntimeException ) {
+            return (RuntimeException) t;
+        }
+        if ( t instanceof Error ) {
+            throw (Error) t;
+        }
+        return new RuntimeException( t );
+    }
+}
@@ -6,8 +6,11 @@ import static com.esotericsoftware.minlog.Log.trace;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.SerializerFactory;
@@ -33,6 +36,11 @@ import com.esotericsoftware.kryo.serializers.FieldSerializer;
  * <p/>
  * Similarly, it is possible to created a serializer which does the opposite such that the resulting serializer
  * would only serialize fields that are annotated with the specified annotations.
+ * <p/>
+ * The annotation scan of a class is done only once per set of marked annotations and shared
+ * by all serializers (and therefore all {@link Kryo} instances, e.g. of a pool) of the jvm. The names
+ * of the marked fields are cached with the class as long as it's loaded, for at most
+ * {@value #MAX_MARKED_SETS} different sets of marked annotations per class.
  *
  * @author <a href="mailto:rafael.wth@web.de">Rafael Winterhalter</a>
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
@@ -72,7 +80,29 @@ public class FieldAnnotationAwareSerializer<T> extends FieldSerializer<T> {
         }
     }
 
-    private final Set<Class<? extends Annotation>> marked;
+    /**
+     * The maximum number of sets of marked annotations for which the marked fields of a class are cached.
+     */
+    static final int MAX_MARKED_SETS = 16;
+
+    /**
+     * The names of the fields declared by a class that are annotated with any of the marked annotations,
+     * per declaring class and (immutable) set of marked annotations. Names are cached instead of fields,
+     * so that the cache doesn't hold the reflection objects of all fields.
+     */
+    private static final ClassValue<ConcurrentMap<Set<Class<? extends Annotation>>, Set<String>>> MARKED_FIELD_NAMES =
+            new ClassValue<ConcurrentMap<Set<Class<? extends Annotation>>, Set<String>>>() {
+                @Override
+                protected ConcurrentMap<Set<Class<? extends Annotation>>, Set<String>> computeValue(final Class<?> type) {
+                    return new ConcurrentHashMap<Set<Class<? extends Annotation>>, Set<String>>();
+                }
+            };
+
+    /**
+     * The marked annotations, this set is immutable and replaced on {@link #addAnnotation(Class)}
+     * or {@link #removeAnnotation(Class)} so that it can be used as key for {@link #MARKED_FIELD_NAMES}.
+     */
+    private Set<Class<? extends Annotation>> marked;
 
     /**
      * Determines whether annotated fields should be excluded from serialization.
@@ -102,7 +132,7 @@ public class FieldAnnotationAwareSerializer<T> extends FieldSerializer<T> {
                                           final boolean disregarding) {
         super(kryo, type);
         this.disregarding = disregarding;
-        this.marked = new HashSet<Class<? extends Annotation>>(marked);
+        this.marked = Collections.unmodifiableSet(new HashSet<Class<? extends Annotation>>(marked));
 
         removeFields();
     }
@@ -124,20 +154,45 @@ public class FieldAnnotationAwareSerializer<T> extends FieldSerializer<T> {
         final CachedField[] cachedFields = getFields();
         for (final CachedField cachedField : cachedFields) {
             final Field field = cachedField.getField();
-            if (isRemove(field)) {
+            final boolean isMarked = getMarkedFieldNames(field.getDeclaringClass(), marked).contains(field.getName());
+            if (!isMarked ^ disregarding) {
                 if (TRACE) {
                     trace("kryo", String.format("Ignoring field %s tag: %s", disregarding ? "without" : "with", cachedField));
                 }
-                super.removeField(field.getName());
+                super.removeField(cachedField);
+            }
+        }
+    }
+
+    private static Set<String> getMarkedFieldNames(final Class<?> declaringClass,
+                                                   final Set<Class<? extends Annotation>> marked) {
+        final ConcurrentMap<Set<Class<? extends Annotation>>, Set<String>> namesByAnnotations =
+                MARKED_FIELD_NAMES.get(declaringClass);
+        Set<String> result = namesByAnnotations.get(marked);
+        if (result == null) {
+            result = scanMarkedFieldNames(declaringClass, marked);
+            if (namesByAnnotations.size() < MAX_MARKED_SETS) {
+                final Set<String> existing = namesByAnnotations.putIfAbsent(marked, result);
+                if (existing != null) {
+                    result = existing;
+                }
             }
         }
+        return result;
     }
 
-    private boolean isRemove(final Field field) {
-        return !isMarked(field) ^ disregarding;
+    private static Set<String> scanMarkedFieldNames(final Class<?> declaringClass,
+                                                    final Set<Class<? extends Annotation>> marked) {
+        final Set<String> result = new HashSet<String>();
+        for (final Field field : declaringClass.getDeclaredFields()) {
+            if (isMarked(field, marked)) {
+                result.add(field.getName());
+            }
+        }
+        return result;
     }
 
-    private boolean isMarked(final Field field) {
+    private static boolean isMarked(final Field field, final Set<Class<? extends Annotation>> marked) {
         for (final Annotation annotation : field.getAnnotations()) {
             final Class<? extends Annotation> annotationType = annotation.annotationType();
             if (marked.contains(annotationType)) {
@@ -163,8 +218,11 @@ public class FieldAnnotationAwareSerializer<T> extends FieldSerializer<T> {
      * @return {@code true} if the method call had an effect.
      */
     public boolean addAnnotation(final Class<? extends Annotation> clazz) {
-        if (disregarding && marked.add(clazz)) {
-            initializeCachedFields();
+        if (disregarding && !marked.contains(clazz)) {
+            final Set<Class<? extends Annotation>> newMarked = new HashSet<Class<? extends Annotation>>(marked);
+            newMarked.add(clazz);
+            marked = Collections.unmodifiableSet(newMarked);
+            updateFields();
             return true;
         }
         return false;
@@ -186,8 +244,11 @@ public class FieldAnnotationAwareSerializer<T> extends FieldSerializer<T> {
      * @return {@code true} if the method call had an effect.
      */
     public boolean removeAnnotation(final Class<? extends Annotation> clazz) {
-        if (!disregarding && marked.remove(clazz)) {
-            initializeCachedFields();
+        if (!disregarding && marked.contains(clazz)) {
+            final Set<Class<? extends Annotation>> newMarked = new HashSet<Class<? extends Annotation>>(marked);
+            newMarked.remove(clazz);
+            marked = Collections.unmodifiableSet(newMarked);
+            updateFields();
             return true;
         }
         return false;
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Martin Grotzke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an &quot;AS IS&quot; BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.javakaffee.kryoserializers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.util.ObjectMap;
+
+/**
+ * Assigns ids to values written in the current object graph, so that a serializer can write a value
+ * only once per graph and reference it by its id afterwards. The dictionary is stored in the graph
+ * context of kryo (per owner, usually the serializer) and therefore reset for each object graph.
+ * <p>
+ * Ids start at 1, so that a serializer can write 0 to announce a new value. On write the ids are
+ * looked up via {@link #getId(Object)} and assigned via {@link #putId(Object)}, on read the values
+ * are registered via {@link #addValue(Object)} in the same order and resolved via {@link #getValue(int)}.
+ * </p>
+ * <p>
+ * Note: This class is meant for the serializers of this project only, it's public just because
+ * it's also used from subpackages.
+ * </p>
+ *
+ * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
+ */
+public final class GraphDictionary {
+
+    private final Map<Object, Integer> _ids = new HashMap<Object, Integer>();
+    private final List<Object> _values = new ArrayList<Object>();
+
+    private GraphDictionary() {
+    }
+
+    /**
+     * Returns the dictionary of the given owner for the current object graph, it's created if necessary.
+     */
+    public static GraphDictionary get( final Kryo kryo, final Object owner ) {
+        final ObjectMap<Object, Object> graphContext = graphContext( kryo );
+        GraphDictionary result = (GraphDictionary) graphContext.get( owner );
+        if ( result == null ) {
+            result = new GraphDictionary();
+            graphContext.put( owner, result );
+        }
+        return result;
+    }
+
+    /**
+     * The graph context of kryo is a raw <code>ObjectMap</code>.
+     */
+    @SuppressWarnings( "unchecked" )
+    public static ObjectMap<Object, Object> graphContext( final Kryo kryo ) {
+        return kryo.getGraphContext();
+    }
+
+    /**
+     * Returns the id of the given written value, or 0 if it was not written yet in the current object graph.
+     */
+    public int getId( final Object value ) {
+        final Integer id = _ids.get( value );
+        return id != null ? id : 0;
+    }
+
+    /**
+     * Assigns the next id to the given written value.
+     */
+    public void putId( final Object value ) {
+        _ids.put( value, _ids.size() + 1 );
+    }
+
+    /**
+     * Returns the read value with the given id (must be greater than 0).
+     */
+    @SuppressWarnings( "unchecked" )
+    public <T> T getValue( final int id ) {
+        return (T) _values.get( id - 1 );
+    }
+
+    /**
+     * Registers the given read value with the next id.
+     */
+    public void addValue( final Object value ) {
+        _values.add( value );
+    }
+
+}
@@ -17,9 +17,15 @@
 package de.javakaffee.kryoserializers;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
@@ -35,40 +41,54 @@ import com.esotericsoftware.kryo.io.Output;
  * (created via <code>Calendar.getInstance(Locale.ENGLISH)</code>)
  * would take 1323 byte, this one only takes 24 byte.
  * </p>
+ * <p>
+ * The time zone id is written only for the first calendar of an object graph that uses
+ * this time zone, other calendars just reference it by a varint id.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 public class GregorianCalendarSerializer extends Serializer<GregorianCalendar> {
 
+    /* TimeZone.getTimeZone is synchronized and creates a new instance for each call, so the
+     * resolved time zones are cached and only cloned for each calendar. Only the available ids
+     * are cached, so that the cache is bounded (unknown ids would resolve to GMT anyway).
+     */
+    private static final ConcurrentMap<String, TimeZone> TIME_ZONES = new ConcurrentHashMap<String, TimeZone>();
+    private static final Set<String> AVAILABLE_IDS = new HashSet<String>( Arrays.asList( TimeZone.getAvailableIDs() ) );
+
     private final Field _zoneField;
 
+    /**
+     * @throws IllegalStateException if the time zone field of {@link Calendar} is not accessible.
+     */
     public GregorianCalendarSerializer() {
-        try {
-            _zoneField = Calendar.class.getDeclaredField( "zone" );
-            _zoneField.setAccessible( true );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
-        }
+        _zoneField = FieldAccessor.getField( Calendar.class, "zone" );
     }
 
     @Override
     public GregorianCalendar read(final Kryo kryo, final Input input, final Class<? extends GregorianCalendar> type) {
-        final Calendar result = GregorianCalendar.getInstance();
-        
-        result.setTimeInMillis( input.readLong( true ) );
-        result.setLenient( input.readBoolean() );
-        result.setFirstDayOfWeek( input.readInt( true ) );
-        result.setMinimalDaysInFirstWeek( input.readInt( true ) );
-        
-        /* check if we actually need to set the timezone, as
-         * TimeZone.getTimeZone is synchronized, so we might prevent this
-         */
-        final String timeZoneId = input.readString();
-        if ( !getTimeZone( result ).getID().equals( timeZoneId ) ) {
-            result.setTimeZone( TimeZone.getTimeZone( timeZoneId ) );
+        final long timeInMillis = input.readLong( true );
+        final boolean lenient = input.readBoolean();
+        final int firstDayOfWeek = input.readInt( true );
+        final int minimalDaysInFirstWeek = input.readInt( true );
+
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final int id = input.readVarInt( true );
+        final TimeZone timeZone;
+        if ( id == 0 ) {
+            timeZone = getTimeZone( input.readString() );
+            dictionary.addValue( timeZone );
+        } else {
+            timeZone = dictionary.getValue( id );
         }
-        
-        return (GregorianCalendar) result;
+
+        final GregorianCalendar result = new GregorianCalendar( (TimeZone) timeZone.clone(), Locale.ROOT );
+        result.setTimeInMillis( timeInMillis );
+        result.setLenient( lenient );
+        result.setFirstDayOfWeek( firstDayOfWeek );
+        result.setMinimalDaysInFirstWeek( minimalDaysInFirstWeek );
+        return result;
     }
 
     @Override
@@ -77,7 +97,19 @@ public class GregorianCalendarSerializer extends Serializer<GregorianCalendar> {
         output.writeBoolean( calendar.isLenient() );
         output.writeInt( calendar.getFirstDayOfWeek(), true );
         output.writeInt( calendar.getMinimalDaysInFirstWeek(), true );
-        output.writeString( getTimeZone( calendar ).getID() );
+
+        /* the time zone id is written only once per object graph, later it's referenced by its index
+         */
+        final String timeZoneId = getTimeZone( calendar ).getID();
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final int id = dictionary.getId( timeZoneId );
+        if ( id != 0 ) {
+            output.writeVarInt( id, true );
+        } else {
+            output.writeVarInt( 0, true );
+            output.writeString( timeZoneId );
+            dictionary.putId( timeZoneId );
+        }
     }
     
     @Override
@@ -85,11 +117,26 @@ public class GregorianCalendarSerializer extends Serializer<GregorianCalendar> {
         return (GregorianCalendar) original.clone();
     }
 
+    private static TimeZone getTimeZone( final String id ) {
+        TimeZone result = TIME_ZONES.get( id );
+        if ( result == null ) {
+            result = TimeZone.getTimeZone( id );
+            if ( !AVAILABLE_IDS.contains( id ) ) {
+                return result;
+            }
+            final TimeZone existing = TIME_ZONES.putIfAbsent( id, result );
+            if ( existing != null ) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
     private TimeZone getTimeZone( final Calendar obj ) {
         /* access the timezone via the field, to prevent cloning of the tz */
         try {
             return (TimeZone) _zoneField.get( obj );
-        } catch ( final Exception e ) {
+        } catch ( final IllegalAccessException e ) {
             throw new RuntimeException( e );
         }
     }
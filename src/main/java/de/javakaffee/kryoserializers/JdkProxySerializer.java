@@ -16,8 +16,16 @@
  */
 package de.javakaffee.kryoserializers;
 
+import static com.esotericsoftware.minlog.Log.TRACE;
+import static com.esotericsoftware.minlog.Log.trace;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
+import java.util.Arrays;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
@@ -26,36 +34,134 @@ import com.esotericsoftware.kryo.io.Output;
 
 /**
  * A serializer for jdk proxies (proxies created via <code>java.lang.reflect.Proxy.newProxyInstance</code>).
+ * <p>
+ * The interfaces of a proxy class are written only once per object graph, further proxies
+ * of the same class just reference them by a varint id. The proxy constructors are cached
+ * per proxy class (in a {@link ClassValue}, so that class loaders are not retained), proxies
+ * are created via this constructor instead of <code>Proxy.newProxyInstance</code>.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
 public class JdkProxySerializer extends Serializer<Object> {
 
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType( Object.class, InvocationHandler.class );
+
+    private static final ClassValue<ProxyConstructor> CONSTRUCTORS = new ClassValue<ProxyConstructor>() {
+        @Override
+        protected ProxyConstructor computeValue( final Class<?> proxyClass ) {
+            return new ProxyConstructor( proxyClass.getClassLoader(), proxyClass.getInterfaces(), createConstructor( proxyClass ) );
+        }
+    };
+
     @Override
     public Object read(final Kryo kryo, final Input input, final Class<? extends Object> type) {
         final InvocationHandler invocationHandler = (InvocationHandler) kryo.readClassAndObject( input );
-        final Class<?>[] interfaces = kryo.readObject( input, Class[].class );
-        final ClassLoader classLoader = kryo.getClassLoader();
-        try {
-            return Proxy.newProxyInstance( classLoader, interfaces, invocationHandler );
-        } catch( final RuntimeException e ) {
-            System.err.println( getClass().getName()+ ".read:\n" +
-                    "Could not create proxy using classLoader " + classLoader + "," +
-                    " have invocationhandler.classloader: " + invocationHandler.getClass().getClassLoader() +
-                    " have contextclassloader: " + Thread.currentThread().getContextClassLoader() );
-            throw e;
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final int id = input.readVarInt( true );
+        final ProxyConstructor constructor;
+        if ( id == 0 ) {
+            final Class<?>[] interfaces = new Class<?>[input.readVarInt( true )];
+            for ( int i = 0; i < interfaces.length; i++ ) {
+                interfaces[i] = kryo.readClass( input ).getType();
+            }
+            constructor = getConstructor( kryo.getClassLoader(), interfaces );
+            dictionary.addValue( constructor );
+        } else {
+            constructor = dictionary.getValue( id );
         }
+        return constructor.newInstance( invocationHandler );
     }
 
     @Override
     public void write(final Kryo kryo, final Output output, final Object obj) {
         kryo.writeClassAndObject( output, Proxy.getInvocationHandler( obj ) );
-        kryo.writeObject( output, obj.getClass().getInterfaces() );
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final int id = dictionary.getId( obj.getClass() );
+        if ( id != 0 ) {
+            output.writeVarInt( id, true );
+        } else {
+            output.writeVarInt( 0, true );
+            final Class<?>[] interfaces = obj.getClass().getInterfaces();
+            output.writeVarInt( interfaces.length, true );
+            for ( final Class<?> iface : interfaces ) {
+                kryo.writeClass( output, iface );
+            }
+            dictionary.putId( obj.getClass() );
+        }
     }
 
     @Override
     public Object copy(final Kryo kryo, final Object original) {
-        return Proxy.newProxyInstance( kryo.getClassLoader(), original.getClass().getInterfaces(),
-                Proxy.getInvocationHandler(original) );
+        return CONSTRUCTORS.get( original.getClass() ).newInstance( Proxy.getInvocationHandler( original ) );
+    }
+
+    @SuppressWarnings( "deprecation" )
+    private static ProxyConstructor getConstructor( final ClassLoader classLoader, final Class<?>[] interfaces ) {
+        final Class<?> proxyClass;
+        try {
+            proxyClass = Proxy.getProxyClass( classLoader, interfaces );
+        } catch ( final RuntimeException e ) {
+            if ( TRACE ) trace( "kryo", "Could not get proxy class for " + Arrays.toString( interfaces )
+                    + ", using Proxy.newProxyInstance: " + e );
+            return new ProxyConstructor( classLoader, interfaces, null );
+        }
+        return CONSTRUCTORS.get( proxyClass );
+    }
+
+    private static MethodHandle createConstructor( final Class<?> proxyClass ) {
+        try {
+            final Constructor<?> constructor = proxyClass.getConstructor( InvocationHandler.class );
+            constructor.setAccessible( true );
+            return MethodHandles.lookup().unreflectConstructor( constructor ).asType( CONSTRUCTOR_TYPE );
+        } catch ( final Exception e ) {
+            if ( TRACE ) trace( "kryo", "Could not create proxy constructor handle for " + proxyClass
+                    + ", using Proxy.newProxyInstance: " + e );
+            return null;
+        }
+    }
+
+    /**
+     * Creates proxy instances via a {@link MethodHandle} for the constructor of the proxy class,
+     * if the handle cannot be created <code>Proxy.newProxyInstance</code> is used.
+     */
+    private static final class ProxyConstructor {
+
+        private final ClassLoader _classLoader;
+        private final Class<?>[] _interfaces;
+        private final MethodHandle _constructor;
+
+        ProxyConstructor( final ClassLoader classLoader, final Class<?>[] interfaces, final MethodHandle constructor ) {
+            _classLoader = classLoader;
+            _interfaces = interfaces;
+            _constructor = constructor;
+        }
+
+        Object newInstance( final InvocationHandler invocationHandler ) {
+            if ( _constructor == null ) {
+                return newProxyInstance( invocationHandler );
+            }
+            try {
+                return (Object) _constructor.invokeExact( invocationHandler );
+            } catch ( final RuntimeException e ) {
+                throw e;
+            } catch ( final Error e ) {
+                throw e;
+            } catch ( final Throwable t ) {
+                throw new RuntimeException( "Could not create proxy for " + Arrays.toString( _interfaces ), t );
+            }
+        }
+
+        private Object newProxyInstance( final InvocationHandler invocationHandler ) {
+            try {
+                return Proxy.newProxyInstance( _classLoader, _interfaces, invocationHandler );
+            } catch( final RuntimeException e ) {
+                System.err.println( JdkProxySerializer.class.getName()+ ".read:\n" +
+                        "Could not create proxy using classLoader " + _classLoader + "," +
+                        " have invocationhandler.classloader: " + invocationHandler.getClass().getClassLoader() +
+                        " have contextclassloader: " + Thread.currentThread().getContextClassLoader() );
+                throw e;
+            }
+        }
     }
 }
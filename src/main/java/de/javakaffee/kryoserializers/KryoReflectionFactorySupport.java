@@ -16,19 +16,26 @@
  */
 package de.javakaffee.kryoserializers;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import sun.reflect.ReflectionFactory;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.SerializerFactory.FieldSerializerFactory;
 import com.esotericsoftware.kryo.serializers.FieldSerializer;
 
 /**
  * A {@link Kryo} specialization that uses sun's {@link ReflectionFactory} to create
  * new instance for classes without a default constructor.
+ * <p>
+ * The instantiator for a class is resolved once and cached in a {@link ClassValue}: public no-arg
+ * constructors are invoked via a {@link MethodHandle}, other classes are instantiated via the
+ * serialization constructor provided by the {@link ReflectionFactory}.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
@@ -37,13 +44,42 @@ public class KryoReflectionFactorySupport extends Kryo {
 
     private static final ReflectionFactory REFLECTION_FACTORY = ReflectionFactory.getReflectionFactory();
     private static final Object[] INITARGS = new Object[0];
-    
-    private static final Map<Class<?>, Constructor<?>> _constructors = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+    private static final MethodType INSTANTIATOR_TYPE = MethodType.methodType( Object.class );
+
+    /**
+     * Instantiators that use the no-args constructor if available, the serialization constructor otherwise.
+     */
+    private static final ClassValue<Instantiator> INSTANTIATORS = new ClassValue<Instantiator>() {
+        @Override
+        protected Instantiator computeValue( final Class<?> type ) {
+            final Instantiator result = newNoArgsConstructorInstantiator( type );
+            return result != null ? result : SERIALIZATION_INSTANTIATORS.get( type );
+        }
+    };
+
+    /**
+     * Instantiators that use the serialization constructor, so that no constructor of the type is invoked.
+     */
+    private static final ClassValue<Instantiator> SERIALIZATION_INSTANTIATORS = new ClassValue<Instantiator>() {
+        @Override
+        protected Instantiator computeValue( final Class<?> type ) {
+            return new ConstructorInstantiator( newConstructorForSerialization( type ) );
+        }
+    };
+
+    public KryoReflectionFactorySupport() {
+        // don't ignore synthetic fields so that inner classes work (see KryoTest.testInnerClass),
+        // configured on the factory so that the fields don't have to be rebuilt for each serializer
+        final FieldSerializerFactory fieldSerializerFactory = new FieldSerializerFactory();
+        fieldSerializerFactory.getConfig().setIgnoreSyntheticFields( false );
+        setDefaultSerializer( fieldSerializerFactory );
+    }
 
     @Override
     public Serializer<?> getDefaultSerializer(@SuppressWarnings("rawtypes") final Class type) {
         final Serializer<?> result = super.getDefaultSerializer(type);
         if(result instanceof FieldSerializer && ((FieldSerializer<?>) result).getFieldSerializerConfig().getIgnoreSyntheticFields()) {
+            // FieldSerializers not created by our default factory (e.g. registered via addDefaultSerializer):
             // don't ignore synthetic fields so that inner classes work (see KryoTest.testInnerClass)
             FieldSerializer<?> fieldSerializer = (FieldSerializer<?>) result;
             fieldSerializer.getFieldSerializerConfig().setIgnoreSyntheticFields(false);
@@ -59,33 +95,12 @@ public class KryoReflectionFactorySupport extends Kryo {
     @SuppressWarnings( "unchecked" )
     public <T> T newInstance( final Class<T> type ) {
         if (type == null) { throw new IllegalArgumentException("type cannot be null."); }
-        Constructor<?> constructor = _constructors.get( type );
-        if ( constructor == null ) {
-            constructor = getNoArgsConstructor( type );
-            if ( constructor == null ) {
-                constructor = newConstructorForSerialization( type );
-            }
-            _constructors.put( type, constructor );
-        }
-        return (T) newInstanceFrom( constructor );
-    }
-
-    private static Object newInstanceFrom( final Constructor<?> constructor ) {
-        try {
-            return constructor.newInstance( INITARGS );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( e );
-        }
+        return (T) INSTANTIATORS.get( type ).newInstance();
     }
 
     @SuppressWarnings( "unchecked" )
     public static <T> T newInstanceFromReflectionFactory( final Class<T> type ) {
-        Constructor<?> constructor = _constructors.get( type );
-        if ( constructor == null ) {
-            constructor = newConstructorForSerialization( type );
-            _constructors.put( type, constructor );
-        }
-        return (T) newInstanceFrom( constructor );
+        return (T) SERIALIZATION_INSTANTIATORS.get( type ).newInstance();
     }
 
     private static <T> Constructor<?> newConstructorForSerialization( final Class<T> type ) {
@@ -98,15 +113,67 @@ public class KryoReflectionFactorySupport extends Kryo {
         }
     }
 
-    private static Constructor<?> getNoArgsConstructor( final Class<?> type ) {
-        final Constructor<?>[] constructors = type.getConstructors();
-        for ( final Constructor<?> constructor : constructors ) {
-            if ( constructor.getParameterTypes().length == 0 ) {
-                constructor.setAccessible( true );
-                return constructor;
+    private static Instantiator newNoArgsConstructorInstantiator( final Class<?> type ) {
+        final Constructor<?> constructor;
+        try {
+            constructor = type.getConstructor();
+        } catch ( final NoSuchMethodException e ) {
+            return null;
+        }
+        constructor.setAccessible( true );
+        try {
+            return new MethodHandleInstantiator( MethodHandles.lookup().unreflectConstructor( constructor ).asType( INSTANTIATOR_TYPE ) );
+        } catch ( final IllegalAccessException e ) {
+            return new ConstructorInstantiator( constructor );
+        }
+    }
+
+    private static interface Instantiator {
+        Object newInstance();
+    }
+
+    private static final class MethodHandleInstantiator implements Instantiator {
+
+        private final MethodHandle _constructor;
+
+        MethodHandleInstantiator( final MethodHandle constructor ) {
+            _constructor = constructor;
+        }
+
+        @Override
+        public Object newInstance() {
+            try {
+                return _constructor.invokeExact();
+            } catch ( final RuntimeException e ) {
+                throw e;
+            } catch ( final Error e ) {
+                throw e;
+            } catch ( final Throwable t ) {
+                throw new RuntimeException( t );
+            }
+        }
+    }
+
+    /**
+     * Used for the serialization constructors of the {@link ReflectionFactory} (these cannot be
+     * converted into method handles as they are not real constructors of the type) and as fallback.
+     */
+    private static final class ConstructorInstantiator implements Instantiator {
+
+        private final Constructor<?> _constructor;
+
+        ConstructorInstantiator( final Constructor<?> constructor ) {
+            _constructor = constructor;
+        }
+
+        @Override
+        public Object newInstance() {
+            try {
+                return _constructor.newInstance( INITARGS );
+            } catch ( final Exception e ) {
+                throw new RuntimeException( e );
             }
         }
-        return null;
     }
     
 }
\ No newline at end of file
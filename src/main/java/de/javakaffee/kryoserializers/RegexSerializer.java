@@ -1,5 +1,8 @@
 package de.javakaffee.kryoserializers;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import com.esotericsoftware.kryo.Kryo;
@@ -9,13 +12,28 @@ import com.esotericsoftware.kryo.io.Output;
 
 /**
  * Kryo {@link Serializer} for regex {@link Pattern}s.
+ * <p>
+ * By default each read compiles the pattern. If a {@link PatternCache} is passed
+ * to the constructor, compiled patterns are taken from this cache instead (as
+ * {@link Pattern}s are immutable they can be shared, also by several kryo instances).
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  * @author serverperformance
  */
 public class RegexSerializer extends Serializer<Pattern> {
 
+    private final PatternCache _cache;
+
     public RegexSerializer() {
+        this(null);
+    }
+
+    /**
+     * @param cache the cache of compiled patterns, may be <code>null</code> to compile patterns on each read.
+     */
+    public RegexSerializer(final PatternCache cache) {
+        _cache = cache;
         setImmutable(true);
     }
 
@@ -29,6 +47,159 @@ public class RegexSerializer extends Serializer<Pattern> {
     public Pattern read(final Kryo kryo, final Input input, final Class<? extends Pattern> patternClass) {
         String regex = input.readString();
         int flags = input.readInt(true);
-        return Pattern.compile(regex, flags);
+        return _cache != null ? _cache.get(regex, flags) : Pattern.compile(regex, flags);
+    }
+
+    /**
+     * A bounded, thread safe cache of compiled {@link Pattern}s keyed by regex and flags, that
+     * evicts the least recently used patterns.
+     * <p>
+     * Larger caches are split into segments with their own lock and lru order, so that concurrent
+     * reads mostly don't block each other. Each segment holds at least {@value #MIN_SEGMENT_SIZE}
+     * patterns, so that small caches are not split into segments that are too small to retain
+     * the patterns in use. Patterns are compiled outside of the lock.
+     * </p>
+     */
+    public static class PatternCache {
+
+        private static final int MAX_SEGMENTS = 16;
+        private static final int MIN_SEGMENT_SIZE = 16;
+
+        private final Segment[] _segments;
+        private final AtomicLong _hits = new AtomicLong();
+        private final AtomicLong _misses = new AtomicLong();
+
+        /**
+         * @param maxSize the maximum number of cached patterns.
+         */
+        public PatternCache(final int maxSize) {
+            if (maxSize <= 0) {
+                throw new IllegalArgumentException("The max size must be positive, but was " + maxSize);
+            }
+            int segmentCount = 1;
+            while (segmentCount * 2 <= Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)) {
+                segmentCount *= 2;
+            }
+            _segments = new Segment[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                // distribute the max size, so that the sum of the segment sizes is maxSize
+                _segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+            }
+        }
+
+        /**
+         * Returns the cached pattern for the given regex and flags, or compiles and caches it.
+         */
+        public Pattern get(final String regex, final int flags) {
+            final Key key = new Key(regex, flags);
+            final Segment segment = _segments[(key.hashCode() ^ (key.hashCode() >>> 16)) & (_segments.length - 1)];
+            Pattern result = segment.get(key);
+            if (result != null) {
+                _hits.incrementAndGet();
+                return result;
+            }
+            _misses.incrementAndGet();
+            result = Pattern.compile(regex, flags);
+            return segment.putIfAbsent(key, result);
+        }
+
+        /**
+         * The number of reads that were served from the cache.
+         */
+        public long getHitCount() {
+            return _hits.get();
+        }
+
+        /**
+         * The number of reads that had to compile the pattern.
+         */
+        public long getMissCount() {
+            return _misses.get();
+        }
+
+        /**
+         * The number of currently cached patterns.
+         */
+        public int size() {
+            int result = 0;
+            for (final Segment segment : _segments) {
+                result += segment.size();
+            }
+            return result;
+        }
+
+        /**
+         * Removes all cached patterns, the hit and miss counters are not reset.
+         */
+        public void clear() {
+            for (final Segment segment : _segments) {
+                segment.clear();
+            }
+        }
+
+        private static final class Segment {
+
+            private final LinkedHashMap<Key, Pattern> _patterns;
+
+            Segment(final int maxSize) {
+                _patterns = new LinkedHashMap<Key, Pattern>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(final Map.Entry<Key, Pattern> eldest) {
+                        return size() > maxSize;
+                    }
+                };
+            }
+
+            synchronized Pattern get(final Key key) {
+                return _patterns.get(key);
+            }
+
+            synchronized Pattern putIfAbsent(final Key key, final Pattern pattern) {
+                final Pattern existing = _patterns.get(key);
+                if (existing != null) {
+                    return existing;
+                }
+                _patterns.put(key, pattern);
+                return pattern;
+            }
+
+            synchronized int size() {
+                return _patterns.size();
+            }
+
+            synchronized void clear() {
+                _patterns.clear();
+            }
+        }
+
+        private static final class Key {
+
+            private final String _regex;
+            private final int _flags;
+
+            Key(final String regex, final int flags) {
+                _regex = regex;
+                _flags = flags;
+            }
+
+            @Override
+            public int hashCode() {
+                return 31 * _regex.hashCode() + _flags;
+            }
+
+            @Override
+            public boolean equals(final Object obj) {
+                if (this == obj) {
+                    return true;
+                }
+                if (!(obj instanceof Key)) {
+                    return false;
+                }
+                final Key other = (Key) obj;
+                return _flags == other._flags && _regex.equals(other._regex);
+            }
+        }
     }
 }
@@ -32,6 +32,10 @@ import com.esotericsoftware.kryo.io.Output;
  * An instance of a serializer can be obtained via {@link #createFor(Class)}, which
  * just returns <code>null</code> if the given type is not supported by these
  * serializers.
+ * <p>
+ * By default a sublist is serialized together with its complete parent list, see {@link Mode}
+ * for the alternatives that only serialize the elements of the sublist.
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
@@ -57,6 +61,28 @@ public class SubListSerializers {
     // https://groups.google.com/d/msg/kryo-users/Eu5V4bxCfws/k-8UQ22y59AJ
     private static final Object FAKE_REFERENCE = new Object();
 
+    /**
+     * Determines how a sublist is serialized.
+     */
+    public static enum Mode {
+        /**
+         * Writes the parent list and the sublist's indexes, on deserialization the sublist is
+         * recreated as view of the parent list. This is the default.
+         */
+        PARENT,
+        /**
+         * Writes only the elements of the sublist, on deserialization (and copy) they're
+         * returned as standalone {@link ArrayList}.
+         */
+        SLICE,
+        /**
+         * Like {@link #SLICE}, but if the parent list was already written to the stream before
+         * (so that it's written as reference only) the sublist is written as in {@link #PARENT} mode.
+         * This requires kryo's reference tracking, copies always create a standalone list.
+         */
+        SLICE_UNLESS_PARENT_WRITTEN
+    }
+
     /**
      * Obtain a serializer for the given sublist type. If the type is not supported
      * <code>null</code> is returned.
@@ -65,10 +91,24 @@ public class SubListSerializers {
      */
     @SuppressWarnings("rawtypes")
     public static Serializer<List<?>> createFor(final Class type) {
+        return createFor(type, Mode.PARENT);
+    }
+
+    /**
+     * Obtain a serializer for the given sublist type, that uses the given {@link Mode}.
+     * If the type is not supported <code>null</code> is returned.
+     * @param type the class of the sublist.
+     * @param mode determines how sublists are serialized.
+     * @return a serializer instance or <code>null</code>.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Serializer<List<?>> createFor(final Class type, final Mode mode) {
         if (ArrayListSubListSerializer.canSerialize(type))
-            return new ArrayListSubListSerializer();
+            return new ArrayListSubListSerializer(mode);
+        if (AbstractListSubListSerializer.canSerialize(type))
+            return new AbstractListSubListSerializer(mode);
         if (JavaUtilSubListSerializer.canSerialize(type))
-            return new JavaUtilSubListSerializer();
+            return new JavaUtilSubListSerializer(mode);
         return null;
     }
 
@@ -76,56 +116,85 @@ public class SubListSerializers {
      * Adds appropriate sublist serializers as default serializers.
      */
     public static Kryo addDefaultSerializers(Kryo kryo) {
-        ArrayListSubListSerializer.addDefaultSerializer(kryo);
-        AbstractListSubListSerializer.addDefaultSerializer(kryo);
-        JavaUtilSubListSerializer.addDefaultSerializer(kryo);
+        return addDefaultSerializers(kryo, Mode.PARENT);
+    }
+
+    /**
+     * Adds appropriate sublist serializers as default serializers, that use the given {@link Mode}.
+     */
+    public static Kryo addDefaultSerializers(Kryo kryo, Mode mode) {
+        ArrayListSubListSerializer.addDefaultSerializer(kryo, mode);
+        AbstractListSubListSerializer.addDefaultSerializer(kryo, mode);
+        JavaUtilSubListSerializer.addDefaultSerializer(kryo, mode);
         return kryo;
     }
 
     /**
-     * Supports sublists created via {@link ArrayList#subList(int, int)} since java7 and {@link LinkedList#subList(int, int)} since java9 (openjdk).
+     * Writes the elements of the given sublist if required by the given mode, preceded by a flag
+     * that tells if the slice was written.
+     * @return <code>true</code> if the slice was written, <code>false</code> if the sublist must be
+     * written together with its parent.
      */
-    private static class SubListSerializer extends Serializer<List<?>> {
+    static boolean writeSlice(final Kryo kryo, final Output output, final List<?> subList, final Object parent, final Mode mode) {
+        final boolean slice = mode == Mode.SLICE || !isWritten(kryo, parent);
+        output.writeBoolean(slice);
+        if (slice) {
+            output.writeInt(subList.size(), true);
+            for (final Object item : subList) {
+                kryo.writeClassAndObject(output, item);
+            }
+        }
+        return slice;
+    }
 
-        private Field _parentField;
-        private Field _parentOffsetField;
-        private Field _sizeField;
+    private static boolean isWritten(final Kryo kryo, final Object object) {
+        return kryo.getReferences() && kryo.getReferenceResolver().getWrittenId(object) != -1;
+    }
 
-        public SubListSerializer(String subListClassName) {
-            try {
-                final Class<?> clazz = Class.forName(subListClassName);
-                _parentField = getParentField(clazz);
-                _parentOffsetField = getOffsetField(clazz);
-                _sizeField = clazz.getDeclaredField( "size" );
-                _parentField.setAccessible( true );
-                _parentOffsetField.setAccessible( true );
-                _sizeField.setAccessible( true );
-            } catch (final Exception e) {
-                throw new RuntimeException(e);
-            }
+    static List<?> readSlice(final Kryo kryo, final Input input) {
+        final int size = input.readInt(true);
+        final List<Object> result = new ArrayList<Object>(size);
+        kryo.reference(result);
+        for (int i = 0; i < size; i++) {
+            result.add(kryo.readClassAndObject(input));
         }
+        return result;
+    }
 
-        private static Field getParentField(Class clazz) throws NoSuchFieldException {
-            try {
-                // java 9+
-                return clazz.getDeclaredField("root");
-            } catch(NoSuchFieldException e) {
-                return clazz.getDeclaredField("parent");
-            }
+    static List<?> copySlice(final Kryo kryo, final List<?> subList) {
+        final List<Object> result = new ArrayList<Object>(subList.size());
+        kryo.reference(result);
+        for (final Object item : subList) {
+            result.add(kryo.copy(item));
         }
+        return result;
+    }
 
-        private static Field getOffsetField(Class<?> clazz) throws NoSuchFieldException {
-            try {
-                // up to jdk8 (which also has an "offset" field (we don't need) - therefore we check "parentOffset" first
-                return clazz.getDeclaredField( "parentOffset" );
-            } catch (NoSuchFieldException e) {
-                // jdk9+ only has "offset" which is the parent offset
-                return clazz.getDeclaredField( "offset" );
-            }
+    /**
+     * Supports sublists created via {@link ArrayList#subList(int, int)} since java7 and {@link LinkedList#subList(int, int)} since java9 (openjdk).
+     */
+    private static class SubListSerializer extends Serializer<List<?>> {
+
+        private final Field _parentField;
+        private final Field _parentOffsetField;
+        private final Field _sizeField;
+        private final Mode _mode;
+
+        public SubListSerializer(String subListClassName, Mode mode) {
+            _mode = mode;
+            // java 9+ has "root", up to jdk8 "parent"
+            _parentField = FieldAccessor.getField(subListClassName, "root", "parent");
+            // up to jdk8 (which also has an "offset" field (we don't need) - therefore we check "parentOffset" first,
+            // jdk9+ only has "offset" which is the parent offset
+            _parentOffsetField = FieldAccessor.getField(subListClassName, "parentOffset", "offset");
+            _sizeField = FieldAccessor.getField(subListClassName, "size");
         }
 
         @Override
         public List<?> read(final Kryo kryo, final Input input, final Class<? extends List<?>> clazz) {
+            if (_mode != Mode.PARENT && input.readBoolean()) {
+                return readSlice(kryo, input);
+            }
             kryo.reference(FAKE_REFERENCE);
             final List<?> list = (List<?>) kryo.readClassAndObject(input);
             final int fromIndex = input.readInt(true);
@@ -136,7 +205,11 @@ public class SubListSerializers {
         @Override
         public void write(final Kryo kryo, final Output output, final List<?> obj) {
             try {
-                kryo.writeClassAndObject(output, _parentField.get(obj));
+                final Object parent = _parentField.get(obj);
+                if (_mode != Mode.PARENT && writeSlice(kryo, output, obj, parent, _mode)) {
+                    return;
+                }
+                kryo.writeClassAndObject(output, parent);
                 final int parentOffset = _parentOffsetField.getInt( obj );
                 final int fromIndex = parentOffset;
                 output.writeInt(fromIndex, true);
@@ -153,6 +226,9 @@ public class SubListSerializers {
 
         @Override
         public List<?> copy(final Kryo kryo, final List<?> original) {
+            if (_mode != Mode.PARENT) {
+                return copySlice(kryo, original);
+            }
             kryo.reference(FAKE_REFERENCE);
             try {
                 final List<?> list = (List<?>) _parentField.get(original);
@@ -174,7 +250,15 @@ public class SubListSerializers {
 
         public static final Class<?> SUBLIST_CLASS = SubListSerializers.getClassOrNull("java.util.ArrayList$SubList");
 
-        private final SubListSerializer delegate = new SubListSerializer("java.util.ArrayList$SubList");
+        private final SubListSerializer delegate;
+
+        public ArrayListSubListSerializer() {
+            this(Mode.PARENT);
+        }
+
+        public ArrayListSubListSerializer(final Mode mode) {
+            delegate = new SubListSerializer("java.util.ArrayList$SubList", mode);
+        }
 
         /**
          * Can be used to determine, if the given type can be handled by this serializer.
@@ -188,7 +272,11 @@ public class SubListSerializers {
         }
 
         public static Kryo addDefaultSerializer(Kryo kryo) {
-            if(SUBLIST_CLASS != null) kryo.addDefaultSerializer(SUBLIST_CLASS, new ArrayListSubListSerializer());
+            return addDefaultSerializer(kryo, Mode.PARENT);
+        }
+
+        public static Kryo addDefaultSerializer(Kryo kryo, Mode mode) {
+            if(SUBLIST_CLASS != null) kryo.addDefaultSerializer(SUBLIST_CLASS, new ArrayListSubListSerializer(mode));
             return kryo;
         }
 
@@ -216,7 +304,15 @@ public class SubListSerializers {
 
         public static final Class<?> SUBLIST_CLASS = SubListSerializers.getClassOrNull("java.util.AbstractList$SubList");
 
-        private final SubListSerializer delegate = new SubListSerializer("java.util.AbstractList$SubList");
+        private final SubListSerializer delegate;
+
+        public AbstractListSubListSerializer() {
+            this(Mode.PARENT);
+        }
+
+        public AbstractListSubListSerializer(final Mode mode) {
+            delegate = new SubListSerializer("java.util.AbstractList$SubList", mode);
+        }
 
         /**
          * Can be used to determine, if the given type can be handled by this serializer.
@@ -230,7 +326,11 @@ public class SubListSerializers {
         }
 
         public static Kryo addDefaultSerializer(Kryo kryo) {
-            if(SUBLIST_CLASS != null) kryo.addDefaultSerializer(SUBLIST_CLASS, new AbstractListSubListSerializer());
+            return addDefaultSerializer(kryo, Mode.PARENT);
+        }
+
+        public static Kryo addDefaultSerializer(Kryo kryo, Mode mode) {
+            if(SUBLIST_CLASS != null) kryo.addDefaultSerializer(SUBLIST_CLASS, new AbstractListSubListSerializer(mode));
             return kryo;
         }
 
@@ -258,22 +358,20 @@ public class SubListSerializers {
 
         public static final Class<?> SUBLIST_CLASS = SubListSerializers.getClassOrNull("java.util.SubList");
 
-        private Field _listField;
-        private Field _offsetField;
-        private Field _sizeField;
+        private final Field _listField;
+        private final Field _offsetField;
+        private final Field _sizeField;
+        private final Mode _mode;
 
         public JavaUtilSubListSerializer() {
-            try {
-                final Class<?> clazz = Class.forName("java.util.SubList");
-                _listField = clazz.getDeclaredField("l");
-                _offsetField = clazz.getDeclaredField("offset");
-                _sizeField = clazz.getDeclaredField("size");
-                _listField.setAccessible(true);
-                _offsetField.setAccessible(true);
-                _sizeField.setAccessible(true);
-            } catch (final Exception e) {
-                throw new RuntimeException(e);
-            }
+            this(Mode.PARENT);
+        }
+
+        public JavaUtilSubListSerializer(final Mode mode) {
+            _mode = mode;
+            _listField = FieldAccessor.getField("java.util.SubList", "l");
+            _offsetField = FieldAccessor.getField("java.util.SubList", "offset");
+            _sizeField = FieldAccessor.getField("java.util.SubList", "size");
         }
 
         /**
@@ -288,12 +386,19 @@ public class SubListSerializers {
         }
 
         public static Kryo addDefaultSerializer(Kryo kryo) {
-            if(SUBLIST_CLASS != null) kryo.addDefaultSerializer(SUBLIST_CLASS, new JavaUtilSubListSerializer());
+            return addDefaultSerializer(kryo, Mode.PARENT);
+        }
+
+        public static Kryo addDefaultSerializer(Kryo kryo, Mode mode) {
+            if(SUBLIST_CLASS != null) kryo.addDefaultSerializer(SUBLIST_CLASS, new JavaUtilSubListSerializer(mode));
             return kryo;
         }
 
         @Override
         public List<?> read(final Kryo kryo, final Input input, final Class<? extends List<?>> clazz) {
+            if (_mode != Mode.PARENT && input.readBoolean()) {
+                return readSlice(kryo, input);
+            }
             kryo.reference(FAKE_REFERENCE);
             final List<?> list = (List<?>) kryo.readClassAndObject(input);
             final int fromIndex = input.readInt(true);
@@ -304,7 +409,11 @@ public class SubListSerializers {
         @Override
         public void write(final Kryo kryo, final Output output, final List<?> obj) {
             try {
-                kryo.writeClassAndObject(output, _listField.get(obj));
+                final Object parent = _listField.get(obj);
+                if (_mode != Mode.PARENT && writeSlice(kryo, output, obj, parent, _mode)) {
+                    return;
+                }
+                kryo.writeClassAndObject(output, parent);
                 final int fromIndex = _offsetField.getInt(obj);
                 output.writeInt(fromIndex, true);
                 final int toIndex = fromIndex + _sizeField.getInt(obj);
@@ -320,6 +429,9 @@ public class SubListSerializers {
 
         @Override
         public List<?> copy(final Kryo kryo, final List<?> obj) {
+            if (_mode != Mode.PARENT) {
+                return copySlice(kryo, obj);
+            }
             kryo.reference(FAKE_REFERENCE);
             try {
                 final List<?> list = (List<?>) _listField.get(obj);
@@ -16,7 +16,7 @@
  */
 package de.javakaffee.kryoserializers;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -45,23 +45,10 @@ import com.esotericsoftware.kryo.io.Output;
  */
 public class SynchronizedCollectionsSerializer extends Serializer<Object> {
     
-    private static final Field SOURCE_COLLECTION_FIELD;
-    private static final Field SOURCE_MAP_FIELD;
-    
-    static {
-        try {
-            SOURCE_COLLECTION_FIELD = Class.forName("java.util.Collections$SynchronizedCollection" )
-                .getDeclaredField( "c" );
-            SOURCE_COLLECTION_FIELD.setAccessible( true );
-
-            SOURCE_MAP_FIELD = Class.forName("java.util.Collections$SynchronizedMap" )
-                .getDeclaredField( "m" );
-            SOURCE_MAP_FIELD.setAccessible( true );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( "Could not access source collection" +
-                    " field in java.util.Collections$SynchronizedCollection.", e );
-        }
-    }
+    private static final MethodHandle SOURCE_COLLECTION_GETTER = FieldAccessor.getter(
+            FieldAccessor.getField( "java.util.Collections$SynchronizedCollection", "c" ) );
+    private static final MethodHandle SOURCE_MAP_GETTER = FieldAccessor.getter(
+            FieldAccessor.getField( "java.util.Collections$SynchronizedMap", "m" ) );
 
     @Override
     public Object read(final Kryo kryo, final Input input, final Class<? extends Object> clazz) {
@@ -78,7 +65,7 @@ public class SynchronizedCollectionsSerializer extends Serializer<Object> {
             // the ordinal could be replaced by s.th. else (e.g. a explicitely managed "id")
             output.writeInt( collection.ordinal(), true );
             synchronized (object) {
-                kryo.writeClassAndObject( output, collection.sourceCollectionField.get( object ) );
+                kryo.writeClassAndObject( output, getSourceCollection( collection, object ) );
             }
         } catch ( final RuntimeException e ) {
             // Don't eat and wrap RuntimeExceptions because the ObjectBuffer.write...
@@ -93,7 +80,7 @@ public class SynchronizedCollectionsSerializer extends Serializer<Object> {
     public Object copy(Kryo kryo, Object original) {
       try {
           final SynchronizedCollection collection = SynchronizedCollection.valueOfType( original.getClass() );
-          Object sourceCollectionCopy = kryo.copy(collection.sourceCollectionField.get(original));
+          Object sourceCollectionCopy = kryo.copy(getSourceCollection(collection, original));
           return collection.create( sourceCollectionCopy );
       } catch ( final RuntimeException e ) {
           // Don't eat and wrap RuntimeExceptions
@@ -103,38 +90,51 @@ public class SynchronizedCollectionsSerializer extends Serializer<Object> {
       }
     }
 
+    /**
+     * Returns the wrapped collection or map, via the handles held in constants (instead of the enum).
+     */
+    private static Object getSourceCollection( final SynchronizedCollection collection, final Object object ) {
+        try {
+            return collection.map
+                    ? (Object) SOURCE_MAP_GETTER.invokeExact( object )
+                    : (Object) SOURCE_COLLECTION_GETTER.invokeExact( object );
+        } catch ( final Throwable t ) {
+            throw FieldAccessor.rethrow( t );
+        }
+    }
+
     private static enum SynchronizedCollection {
-        COLLECTION( Collections.synchronizedCollection( Arrays.asList( "" ) ).getClass(), SOURCE_COLLECTION_FIELD ){
+        COLLECTION( Collections.synchronizedCollection( Arrays.asList( "" ) ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.synchronizedCollection( (Collection<?>) sourceCollection );
             }
         },
-        RANDOM_ACCESS_LIST( Collections.synchronizedList( new ArrayList<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        RANDOM_ACCESS_LIST( Collections.synchronizedList( new ArrayList<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.synchronizedList( (List<?>) sourceCollection );
             }
         },
-        LIST( Collections.synchronizedList( new LinkedList<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        LIST( Collections.synchronizedList( new LinkedList<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.synchronizedList( (List<?>) sourceCollection );
             }
         },
-        SET( Collections.synchronizedSet( new HashSet<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        SET( Collections.synchronizedSet( new HashSet<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.synchronizedSet( (Set<?>) sourceCollection );
             }
         },
-        SORTED_SET( Collections.synchronizedSortedSet( new TreeSet<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        SORTED_SET( Collections.synchronizedSortedSet( new TreeSet<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.synchronizedSortedSet( (SortedSet<?>) sourceCollection );
             }
         },
-        MAP( Collections.synchronizedMap( new HashMap<Void, Void>() ).getClass(), SOURCE_MAP_FIELD ) {
+        MAP( Collections.synchronizedMap( new HashMap<Void, Void>() ).getClass(), true ) {
 
             @Override
             public Object create( final Object sourceCollection ) {
@@ -142,7 +142,7 @@ public class SynchronizedCollectionsSerializer extends Serializer<Object> {
             }
             
         },
-        SORTED_MAP( Collections.synchronizedSortedMap( new TreeMap<Void, Void>() ).getClass(), SOURCE_MAP_FIELD ) {
+        SORTED_MAP( Collections.synchronizedSortedMap( new TreeMap<Void, Void>() ).getClass(), true ) {
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.synchronizedSortedMap( (SortedMap<?, ?>) sourceCollection );
@@ -150,11 +150,11 @@ public class SynchronizedCollectionsSerializer extends Serializer<Object> {
         };
         
         private final Class<?> type;
-        private final Field sourceCollectionField;
+        private final boolean map;
         
-        private SynchronizedCollection( final Class<?> type, final Field sourceCollectionField ) {
+        private SynchronizedCollection( final Class<?> type, final boolean map ) {
             this.type = type;
-            this.sourceCollectionField = sourceCollectionField;
+            this.map = map;
         }
         
         /**
@@ -1,12 +1,22 @@
 package de.javakaffee.kryoserializers;
 
 import java.net.URI;
+import java.net.URISyntaxException;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+/**
+ * A kryo {@link Serializer} for {@link URI}s.
+ * <p>
+ * A uri is written (as string) only once per object graph, further occurrences of the same uri
+ * just reference it by a varint id and are read without parsing the uri again (uris are immutable,
+ * so the instance read first is returned).
+ * </p>
+ */
 public class URISerializer extends Serializer<java.net.URI> {
 
     public URISerializer() {
@@ -15,11 +25,34 @@ public class URISerializer extends Serializer<java.net.URI> {
 
     @Override
     public void write(final Kryo kryo, final Output output, final URI uri) {
-        output.writeString(uri.toString());
+        // the string is cached by the uri and cheaper to hash than the uri
+        final String string = uri.toString();
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final int id = dictionary.getId( string );
+        if ( id != 0 ) {
+            output.writeVarInt( id, true );
+        } else {
+            output.writeVarInt( 0, true );
+            output.writeString( string );
+            dictionary.putId( string );
+        }
     }
 
     @Override
     public URI read(final Kryo kryo, final Input input, final Class<? extends URI> uriClass) {
-        return URI.create(input.readString());
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final int id = input.readVarInt( true );
+        if ( id != 0 ) {
+            return dictionary.getValue( id );
+        }
+        final String string = input.readString();
+        final URI result;
+        try {
+            result = new URI( string );
+        } catch ( final URISyntaxException e ) {
+            throw new KryoException( "Invalid uri " + string, e );
+        }
+        dictionary.addValue( result );
+        return result;
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2010 Martin Grotzke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an &quot;AS IS&quot; BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.javakaffee.kryoserializers;
+
+import java.util.UUID;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * A kryo {@link Serializer} for <code>UUID[]</code> that writes the uuids as packed
+ * longs without any per element class or reference information.
+ * <p>
+ * The elements are written in runs: runs of time based (version 1) and time ordered
+ * (version 7) uuids are delta encoded, all other uuids are written as two longs.
+ * Null elements are written as a bitmap.
+ * </p>
+ * <p>
+ * See {@link UUIDCollectionSerializer} for collections of uuids.
+ * </p>
+ *
+ * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
+ */
+public class UUIDArraySerializer extends Serializer<UUID[]> {
+
+    private static final int PLAIN = 0;
+    private static final int TIME_BASED = 1;
+    private static final int TIME_ORDERED = 2;
+
+    @Override
+    public void write( final Kryo kryo, final Output output, final UUID[] uuids ) {
+        writeUUIDs( output, uuids, uuids.length );
+    }
+
+    @Override
+    public UUID[] read( final Kryo kryo, final Input input, final Class<? extends UUID[]> type ) {
+        return readUUIDs( input );
+    }
+
+    @Override
+    public UUID[] copy( final Kryo kryo, final UUID[] original ) {
+        return original.clone();
+    }
+
+    /**
+     * Writes the first <code>count</code> elements of the given array, which may contain <code>null</code>s.
+     */
+    static void writeUUIDs( final Output output, final UUID[] uuids, final int count ) {
+        output.writeVarInt( count, true );
+
+        int nonNullCount = 0;
+        long[] nulls = null;
+        for ( int i = 0; i < count; i++ ) {
+            if ( uuids[i] == null ) {
+                if ( nulls == null ) {
+                    nulls = new long[( count + 63 ) >>> 6];
+                }
+                nulls[i >>> 6] |= 1L << i;
+            } else {
+                nonNullCount++;
+            }
+        }
+        output.writeBoolean( nulls != null );
+        final UUID[] values;
+        if ( nulls != null ) {
+            output.writeLongs( nulls, 0, nulls.length );
+            values = new UUID[nonNullCount];
+            for ( int i = 0, j = 0; i < count; i++ ) {
+                if ( uuids[i] != null ) {
+                    values[j++] = uuids[i];
+                }
+            }
+        } else {
+            values = uuids;
+        }
+
+        int start = 0;
+        while ( start < nonNullCount ) {
+            int end = runEnd( values, start, nonNullCount );
+            if ( isDeltaRun( values, start, end ) ) {
+                final int kind = kind( values[start] );
+                output.writeVarInt( ( end - start ) << 2 | kind, true );
+                if ( kind == TIME_BASED ) {
+                    writeTimeBasedRun( output, values, start, end );
+                } else {
+                    writeTimeOrderedRun( output, values, start, end );
+                }
+            } else {
+                // collect all uuids up to the next run that can be delta encoded
+                while ( end < nonNullCount ) {
+                    final int nextEnd = runEnd( values, end, nonNullCount );
+                    if ( isDeltaRun( values, end, nextEnd ) ) {
+                        break;
+                    }
+                    end = nextEnd;
+                }
+                output.writeVarInt( ( end - start ) << 2 | PLAIN, true );
+                for ( int i = start; i < end; i++ ) {
+                    output.writeLong( values[i].getMostSignificantBits() );
+                    output.writeLong( values[i].getLeastSignificantBits() );
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Reads an array written by {@link #writeUUIDs(Output, UUID[], int)}.
+     */
+    static UUID[] readUUIDs( final Input input ) {
+        final int count = input.readVarInt( true );
+        final UUID[] result = new UUID[count];
+        final long[] nulls = input.readBoolean() ? input.readLongs( ( count + 63 ) >>> 6 ) : null;
+
+        int index = 0;
+        while ( index < count && isNull( nulls, index ) ) {
+            index++;
+        }
+        while ( index < count ) {
+            final int header = input.readVarInt( true );
+            final int length = header >>> 2;
+            final int kind = header & 3;
+            long msb = 0;
+            long lsb = 0;
+            long timestamp = 0;
+            for ( int i = 0; i < length; i++ ) {
+                switch ( kind ) {
+                    case TIME_BASED:
+                        if ( i == 0 ) {
+                            msb = input.readLong();
+                            lsb = input.readLong();
+                            timestamp = timestamp( msb );
+                        } else {
+                            timestamp += input.readVarLong( false );
+                            msb = timeBasedMostSignificantBits( timestamp );
+                            lsb += input.readVarLong( false );
+                        }
+                        break;
+                    case TIME_ORDERED:
+                        msb = i == 0 ? input.readLong() : msb + input.readVarLong( false );
+                        lsb = input.readLong();
+                        break;
+                    default:
+                        msb = input.readLong();
+                        lsb = input.readLong();
+                }
+                result[index++] = new UUID( msb, lsb );
+                while ( index < count && isNull( nulls, index ) ) {
+                    index++;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isNull( final long[] nulls, final int index ) {
+        return nulls != null && ( nulls[index >>> 6] & ( 1L << index ) ) != 0;
+    }
+
+    private static void writeTimeBasedRun( final Output output, final UUID[] values, final int start, final int end ) {
+        long previousTimestamp = 0;
+        long previousLsb = 0;
+        for ( int i = start; i < end; i++ ) {
+            final long msb = values[i].getMostSignificantBits();
+            final long lsb = values[i].getLeastSignificantBits();
+            final long timestamp = timestamp( msb );
+            if ( i == start ) {
+                output.writeLong( msb );
+                output.writeLong( lsb );
+            } else {
+                // clock sequence and node usually don't change, so the lsb delta is 0
+                output.writeVarLong( timestamp - previousTimestamp, false );
+                output.writeVarLong( lsb - previousLsb, false );
+            }
+            previousTimestamp = timestamp;
+            previousLsb = lsb;
+        }
+    }
+
+    private static void writeTimeOrderedRun( final Output output, final UUID[] values, final int start, final int end ) {
+        long previousMsb = 0;
+        for ( int i = start; i < end; i++ ) {
+            final long msb = values[i].getMostSignificantBits();
+            if ( i == start ) {
+                output.writeLong( msb );
+            } else {
+                // the unix timestamp is in the upper 48 bits
+                output.writeVarLong( msb - previousMsb, false );
+            }
+            // the lsb is random
+            output.writeLong( values[i].getLeastSignificantBits() );
+            previousMsb = msb;
+        }
+    }
+
+    private static int runEnd( final UUID[] values, final int start, final int count ) {
+        final int kind = kind( values[start] );
+        int end = start + 1;
+        while ( end < count && kind( values[end] ) == kind ) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isDeltaRun( final UUID[] values, final int start, final int end ) {
+        return end - start > 1 && kind( values[start] ) != PLAIN;
+    }
+
+    private static int kind( final UUID uuid ) {
+        if ( uuid.variant() != 2 ) {
+            return PLAIN;
+        }
+        switch ( uuid.version() ) {
+            case 1:
+                return TIME_BASED;
+            case 7:
+                return TIME_ORDERED;
+            default:
+                return PLAIN;
+        }
+    }
+
+    /**
+     * The 60 bit timestamp of a version 1 uuid, i.e. time_hi, time_mid and time_low.
+     */
+    private static long timestamp( final long msb ) {
+        return ( msb & 0x0FFFL ) << 48 | ( ( msb >>> 16 ) & 0xFFFFL ) << 32 | msb >>> 32;
+    }
+
+    private static long timeBasedMostSignificantBits( final long timestamp ) {
+        return timestamp << 32 | ( ( timestamp >>> 32 ) & 0xFFFFL ) << 16 | 0x1000L | ( ( timestamp >>> 48 ) & 0x0FFFL );
+    }
+}
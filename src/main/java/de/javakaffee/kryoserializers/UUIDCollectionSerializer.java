@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Martin Grotzke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an &quot;AS IS&quot; BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.javakaffee.kryoserializers;
+
+import java.util.Collection;
+import java.util.UUID;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CollectionSerializer;
+
+/**
+ * A kryo {@link Serializer} for collections that writes collections containing only
+ * {@link UUID}s (and <code>null</code>s) in the packed format of the {@link UUIDArraySerializer}.
+ * Other collections are written like by the {@link CollectionSerializer}, so that this
+ * serializer can also be registered for general collection types, e.g.:
+ * <code><pre>
+ * kryo.register( ArrayList.class, new UUIDCollectionSerializer() );
+ * </pre></code>
+ *
+ * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
+ */
+@SuppressWarnings( { "rawtypes", "unchecked" } )
+public class UUIDCollectionSerializer extends CollectionSerializer {
+
+    @Override
+    public void write( final Kryo kryo, final Output output, final Collection collection ) {
+        final UUID[] uuids = toUUIDs( collection );
+        output.writeBoolean( uuids != null );
+        if ( uuids != null ) {
+            UUIDArraySerializer.writeUUIDs( output, uuids, uuids.length );
+        } else {
+            super.write( kryo, output, collection );
+        }
+    }
+
+    @Override
+    public Collection read( final Kryo kryo, final Input input, final Class type ) {
+        if ( !input.readBoolean() ) {
+            return super.read( kryo, input, type );
+        }
+        final UUID[] uuids = UUIDArraySerializer.readUUIDs( input );
+        final Collection result = create( kryo, input, type, uuids.length );
+        kryo.reference( result );
+        for ( final UUID uuid : uuids ) {
+            result.add( uuid );
+        }
+        return result;
+    }
+
+    /**
+     * Returns the elements of the collection if it contains only uuids and nulls, otherwise <code>null</code>.
+     */
+    private static UUID[] toUUIDs( final Collection<?> collection ) {
+        final UUID[] result = new UUID[collection.size()];
+        int i = 0;
+        for ( final Object item : collection ) {
+            if ( item != null && item.getClass() != UUID.class || i == result.length ) {
+                return null;
+            }
+            result[i++] = (UUID) item;
+        }
+        return i == result.length ? result : null;
+    }
+
+}
@@ -8,22 +8,30 @@ import com.esotericsoftware.kryo.io.Output;
 import java.lang.Character.UnicodeBlock;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * A kryo {@link Serializer} for fields of type {@link UnicodeBlock}, which is effectively but not
  * actually an enum.
+ * <p>
+ * A block is written by its name, which is written only once per object graph, afterwards it's
+ * referenced by a varint id. Because names are written the set of blocks of the serializing
+ * and the deserializing jvm may differ, blocks unknown to the deserializing jvm are read as null.
+ * </p>
  *
  * @author <a href="mailto:seahen123@gmail.com">Chris Hennick</a>
  */
 public class UnicodeBlockSerializer extends Serializer<UnicodeBlock> {
     private static final IdentityHashMap<UnicodeBlock, String> BLOCK_NAMES
             = new IdentityHashMap<UnicodeBlock, String>();
+    private static final Map<String, UnicodeBlock> BLOCKS = new HashMap<String, UnicodeBlock>();
     static {
         // Reflectively look up the instances and their names, which are in UnicodeBlock's static
         // fields (necessary since UnicodeBlock isn't an actual enum)
         for (Field field : UnicodeBlock.class.getDeclaredFields()) {
-            if (Modifier.isStatic(field.getModifiers())) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == UnicodeBlock.class) {
                 try {
                     // For some reason, UnicodeBlock constants aren't already accessible, even
                     // though they're public! WTF?
@@ -31,6 +39,7 @@ public class UnicodeBlockSerializer extends Serializer<UnicodeBlock> {
                     Object value = field.get(null);
                     if (value instanceof UnicodeBlock) {
                         BLOCK_NAMES.put((UnicodeBlock) value, field.getName());
+                        BLOCKS.put(field.getName(), (UnicodeBlock) value);
                     }
                 } catch (IllegalAccessException e) {
                     // Should never happen
@@ -49,7 +58,22 @@ public class UnicodeBlockSerializer extends Serializer<UnicodeBlock> {
      */
     @Override
     public void write(final Kryo kryo, final Output output, final UnicodeBlock obj) {
-        output.writeAscii(BLOCK_NAMES.get(obj));
+        final String name = BLOCK_NAMES.get(obj);
+        if (name == null) {
+            // unknown block
+            output.writeVarInt(0, true);
+            output.writeString(null);
+            return;
+        }
+        final GraphDictionary dictionary = GraphDictionary.get(kryo, this);
+        final int id = dictionary.getId(name);
+        if (id != 0) {
+            output.writeVarInt(id, true);
+        } else {
+            output.writeVarInt(0, true);
+            output.writeString(name);
+            dictionary.putId(name);
+        }
     }
 
     /**
@@ -64,7 +88,18 @@ public class UnicodeBlockSerializer extends Serializer<UnicodeBlock> {
     @Override
     public UnicodeBlock read(final Kryo kryo, final Input input,
                              final Class<? extends UnicodeBlock> unicodeBlockClass) {
-        String name = input.readString();
-        return (name == null) ? null : UnicodeBlock.forName(name);
+        final int id = input.readVarInt(true);
+        final GraphDictionary dictionary = GraphDictionary.get(kryo, this);
+        if (id != 0) {
+            return dictionary.getValue(id);
+        }
+        final String name = input.readString();
+        if (name == null) {
+            return null;
+        }
+        // null for blocks unknown to this jvm
+        final UnicodeBlock result = BLOCKS.get(name);
+        dictionary.addValue(result);
+        return result;
     }
 }
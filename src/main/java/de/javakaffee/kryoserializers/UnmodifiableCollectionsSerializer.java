@@ -16,7 +16,7 @@
  */
 package de.javakaffee.kryoserializers;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -45,24 +45,10 @@ import com.esotericsoftware.kryo.io.Output;
  */
 public class UnmodifiableCollectionsSerializer extends Serializer<Object> {
     
-    private static final Field SOURCE_COLLECTION_FIELD;
-    private static final Field SOURCE_MAP_FIELD;
-    
-    static {
-        try {
-            SOURCE_COLLECTION_FIELD = Class.forName("java.util.Collections$UnmodifiableCollection" )
-                .getDeclaredField( "c" );
-            SOURCE_COLLECTION_FIELD.setAccessible( true );
-            
-
-            SOURCE_MAP_FIELD = Class.forName("java.util.Collections$UnmodifiableMap" )
-                .getDeclaredField( "m" );
-            SOURCE_MAP_FIELD.setAccessible( true );
-        } catch ( final Exception e ) {
-            throw new RuntimeException( "Could not access source collection" +
-                    " field in java.util.Collections$UnmodifiableCollection.", e );
-        }
-    }
+    private static final MethodHandle SOURCE_COLLECTION_GETTER = FieldAccessor.getter(
+            FieldAccessor.getField( "java.util.Collections$UnmodifiableCollection", "c" ) );
+    private static final MethodHandle SOURCE_MAP_GETTER = FieldAccessor.getter(
+            FieldAccessor.getField( "java.util.Collections$UnmodifiableMap", "m" ) );
 
     @Override
     public Object read(final Kryo kryo, final Input input, final Class<? extends Object> clazz) {
@@ -78,7 +64,7 @@ public class UnmodifiableCollectionsSerializer extends Serializer<Object> {
             final UnmodifiableCollection unmodifiableCollection = UnmodifiableCollection.valueOfType( object.getClass() );
             // the ordinal could be replaced by s.th. else (e.g. a explicitely managed "id")
             output.writeInt( unmodifiableCollection.ordinal(), true );
-            kryo.writeClassAndObject( output, unmodifiableCollection.sourceCollectionField.get( object ) );
+            kryo.writeClassAndObject( output, getSourceCollection( unmodifiableCollection, object ) );
         } catch ( final RuntimeException e ) {
             // Don't eat and wrap RuntimeExceptions because the ObjectBuffer.write...
             // handles SerializationException specifically (resizing the buffer)...
@@ -92,7 +78,7 @@ public class UnmodifiableCollectionsSerializer extends Serializer<Object> {
     public Object copy(Kryo kryo, Object original) {
       try {
           final UnmodifiableCollection unmodifiableCollection = UnmodifiableCollection.valueOfType( original.getClass() );
-          Object sourceCollectionCopy = kryo.copy(unmodifiableCollection.sourceCollectionField.get(original));
+          Object sourceCollectionCopy = kryo.copy(getSourceCollection(unmodifiableCollection, original));
           return unmodifiableCollection.create( sourceCollectionCopy );
       } catch ( final RuntimeException e ) {
           // Don't eat and wrap RuntimeExceptions
@@ -102,38 +88,51 @@ public class UnmodifiableCollectionsSerializer extends Serializer<Object> {
       }
     }
 
+    /**
+     * Returns the wrapped collection or map, via the handles held in constants (instead of the enum).
+     */
+    private static Object getSourceCollection( final UnmodifiableCollection collection, final Object object ) {
+        try {
+            return collection.map
+                    ? (Object) SOURCE_MAP_GETTER.invokeExact( object )
+                    : (Object) SOURCE_COLLECTION_GETTER.invokeExact( object );
+        } catch ( final Throwable t ) {
+            throw FieldAccessor.rethrow( t );
+        }
+    }
+
     private static enum UnmodifiableCollection {
-        COLLECTION( Collections.unmodifiableCollection( Arrays.asList( "" ) ).getClass(), SOURCE_COLLECTION_FIELD ){
+        COLLECTION( Collections.unmodifiableCollection( Arrays.asList( "" ) ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.unmodifiableCollection( (Collection<?>) sourceCollection );
             }
         },
-        RANDOM_ACCESS_LIST( Collections.unmodifiableList( new ArrayList<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        RANDOM_ACCESS_LIST( Collections.unmodifiableList( new ArrayList<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.unmodifiableList( (List<?>) sourceCollection );
             }
         },
-        LIST( Collections.unmodifiableList( new LinkedList<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        LIST( Collections.unmodifiableList( new LinkedList<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.unmodifiableList( (List<?>) sourceCollection );
             }
         },
-        SET( Collections.unmodifiableSet( new HashSet<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        SET( Collections.unmodifiableSet( new HashSet<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.unmodifiableSet( (Set<?>) sourceCollection );
             }
         },
-        SORTED_SET( Collections.unmodifiableSortedSet( new TreeSet<Void>() ).getClass(), SOURCE_COLLECTION_FIELD ){
+        SORTED_SET( Collections.unmodifiableSortedSet( new TreeSet<Void>() ).getClass(), false ){
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.unmodifiableSortedSet( (SortedSet<?>) sourceCollection );
             }
         },
-        MAP( Collections.unmodifiableMap( new HashMap<Void, Void>() ).getClass(), SOURCE_MAP_FIELD ) {
+        MAP( Collections.unmodifiableMap( new HashMap<Void, Void>() ).getClass(), true ) {
 
             @Override
             public Object create( final Object sourceCollection ) {
@@ -141,7 +140,7 @@ public class UnmodifiableCollectionsSerializer extends Serializer<Object> {
             }
             
         },
-        SORTED_MAP( Collections.unmodifiableSortedMap( new TreeMap<Void, Void>() ).getClass(), SOURCE_MAP_FIELD ) {
+        SORTED_MAP( Collections.unmodifiableSortedMap( new TreeMap<Void, Void>() ).getClass(), true ) {
             @Override
             public Object create( final Object sourceCollection ) {
                 return Collections.unmodifiableSortedMap( (SortedMap<?, ?>) sourceCollection );
@@ -149,11 +148,11 @@ public class UnmodifiableCollectionsSerializer extends Serializer<Object> {
         };
         
         private final Class<?> type;
-        private final Field sourceCollectionField;
+        private final boolean map;
         
-        private UnmodifiableCollection( final Class<?> type, final Field sourceCollectionField ) {
+        private UnmodifiableCollection( final Class<?> type, final boolean map ) {
             this.type = type;
-            this.sourceCollectionField = sourceCollectionField;
+            this.map = map;
         }
         
         /**
@@ -25,11 +25,20 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+import de.javakaffee.kryoserializers.GraphDictionary;
+
 /**
  * A kryo serializer for cglib proxies. It needs to be registered for {@link CGLibProxyMarker} class.
  * When the serializer for a certain class is requested (via {@link Kryo#getDefaultSerializer(Class)})
  * {@link #canSerialize(Class)} has to be checked with the provided class to see if 
  * a {@link CGLibProxySerializer} should be returned.
+ * <p>
+ * The superclass and interfaces of a proxy class are written only once per object graph,
+ * further proxies of the same class just reference them by a varint id. New instances are
+ * created via {@link Factory#newInstance(Callback[])} of a prototype instead of using a new
+ * {@link Enhancer} for each proxy. The prototypes are cached per proxy class (in a
+ * {@link ClassValue}, so that class loaders are not retained).
+ * </p>
  * 
  * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
  */
@@ -47,27 +56,111 @@ public class CGLibProxySerializer extends Serializer<Object> {
         return Enhancer.isEnhanced( cls ) && cls.getName().indexOf( DEFAULT_NAMING_MARKER ) > 0;
     }
     
+    private static final ClassValue<PrototypeHolder> PROTOTYPES = new ClassValue<PrototypeHolder>() {
+        @Override
+        protected PrototypeHolder computeValue( final Class<?> proxyClass ) {
+            return new PrototypeHolder();
+        }
+    };
+
     @Override
     public Object read(final Kryo kryo, final Input input, final Class<? extends Object> type) {
-        final Class<?> superclass = kryo.readClass( input ).getType();
-        final Class<?>[] interfaces = kryo.readObject(input, Class[].class);
-        final Callback[] callbacks = kryo.readObject(input, Callback[].class);
-        return createProxy( superclass, interfaces, callbacks );
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final int id = input.readVarInt( true );
+        final ProxyType proxyType;
+        if ( id == 0 ) {
+            final Class<?> superclass = kryo.readClass( input ).getType();
+            final Class<?>[] interfaces = new Class<?>[input.readVarInt( true )];
+            for ( int i = 0; i < interfaces.length; i++ ) {
+                interfaces[i] = kryo.readClass( input ).getType();
+            }
+            proxyType = new ProxyType( superclass, interfaces, input.readVarInt( true ) );
+            // added before the callbacks are read, as they might contain proxies of the same type
+            dictionary.addValue( proxyType );
+        } else {
+            proxyType = dictionary.getValue( id );
+        }
+        final Callback[] callbacks = new Callback[proxyType.callbackCount];
+        for ( int i = 0; i < callbacks.length; i++ ) {
+            callbacks[i] = (Callback) kryo.readClassAndObject( input );
+        }
+        if ( proxyType.prototype == null ) {
+            proxyType.prototype = getPrototype( proxyType.superclass, proxyType.interfaces, callbacks );
+        }
+        return proxyType.prototype.newInstance( callbacks );
     }
 
     @Override
     public void write(final Kryo kryo, final Output output, final Object obj) {
-        kryo.writeClass( output, obj.getClass().getSuperclass() );
-        kryo.writeObject( output, obj.getClass().getInterfaces() );
-        kryo.writeObject( output, ((Factory)obj).getCallbacks() );
+        final GraphDictionary dictionary = GraphDictionary.get( kryo, this );
+        final Callback[] callbacks = ((Factory)obj).getCallbacks();
+        final int id = dictionary.getId( obj.getClass() );
+        if ( id != 0 ) {
+            output.writeVarInt( id, true );
+        } else {
+            output.writeVarInt( 0, true );
+            kryo.writeClass( output, obj.getClass().getSuperclass() );
+            final Class<?>[] interfaces = obj.getClass().getInterfaces();
+            output.writeVarInt( interfaces.length, true );
+            for ( final Class<?> iface : interfaces ) {
+                kryo.writeClass( output, iface );
+            }
+            output.writeVarInt( callbacks.length, true );
+            dictionary.putId( obj.getClass() );
+        }
+        for ( final Callback callback : callbacks ) {
+            kryo.writeClassAndObject( output, callback );
+        }
+    }
+
+    /**
+     * Returns a proxy instance of the class generated for the given superclass, interfaces and
+     * callback types, that's used to create new instances via {@link Factory#newInstance(Callback[])}.
+     */
+    private Factory getPrototype( final Class<?> superclass, final Class<?>[] interfaces, final Callback[] callbacks ) {
+        final Class<?>[] callbackTypes = new Class<?>[callbacks.length];
+        for ( int i = 0; i < callbacks.length; i++ ) {
+            callbackTypes[i] = callbacks[i].getClass();
+        }
+        final Enhancer classEnhancer = createEnhancer( superclass, interfaces );
+        classEnhancer.setCallbackTypes( callbackTypes );
+        // the generated class is cached by cglib
+        final PrototypeHolder holder = PROTOTYPES.get( classEnhancer.createClass() );
+        Factory result = holder.prototype;
+        if ( result == null ) {
+            final Enhancer e = createEnhancer( superclass, interfaces );
+            e.setCallbacks( callbacks );
+            result = (Factory) e.create();
+            // don't keep the callbacks of the first deserialized instance alive
+            result.setCallbacks( new Callback[callbacks.length] );
+            holder.prototype = result;
+        }
+        return result;
     }
 
-    private Object createProxy( final Class<?> targetClass, final Class<?>[] interfaces, final Callback[] callbacks ) {
+    private Enhancer createEnhancer( final Class<?> targetClass, final Class<?>[] interfaces ) {
         final Enhancer e = new Enhancer();
         e.setInterfaces( interfaces );
         e.setSuperclass( targetClass );
-        e.setCallbacks( callbacks );
-        return e.create();
+        return e;
+    }
+
+    private static final class PrototypeHolder {
+        volatile Factory prototype;
+    }
+
+    private static final class ProxyType {
+
+        final Class<?> superclass;
+        final Class<?>[] interfaces;
+        final int callbackCount;
+        Factory prototype;
+
+        ProxyType( final Class<?> superclass, final Class<?>[] interfaces, final int callbackCount ) {
+            this.superclass = superclass;
+            this.interfaces = interfaces;
+            this.callbackCount = callbackCount;
+        }
     }
 
 }
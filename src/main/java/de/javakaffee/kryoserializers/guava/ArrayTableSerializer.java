@@ -12,12 +12,26 @@ import java.util.List;
 
 /**
  * A kryo {@link Serializer} for guava-libraries {@link ArrayTable}.
+ * <p>
+ * If all (non null) values of the table have the same type, which is a boxed primitive or {@link String},
+ * the type is written once followed by a bitmap of null cells (if any) and the values of each column.
+ * The values of a column are written in bulk, e.g. as <code>int[]</code>. Otherwise each value is
+ * written with its class.
+ * </p>
+ * <p>
+ * {@link #copy(Kryo, ArrayTable)} copies the values, the (immutable) row and column key lists are
+ * shared with the original table.
+ * </p>
  */
 public class ArrayTableSerializer<R, C, V> extends TableSerializerBase<R, C, V, ArrayTable<R, C, V>> {
 
     private static final boolean HANDLES_NULL = false;
     private static final boolean IMMUTABLE = false;
 
+    private static final int GENERIC = 0;
+    private static final int ALL_NULL = 1;
+    private static final int TYPED = 2;
+
     public ArrayTableSerializer() {
         super(HANDLES_NULL, IMMUTABLE);
     }
@@ -28,23 +42,104 @@ public class ArrayTableSerializer<R, C, V> extends TableSerializerBase<R, C, V,
         List<C> columnKeys = table.columnKeyList();
         kryo.writeClassAndObject(output, rowKeys);
         kryo.writeClassAndObject(output, columnKeys);
-        for (R rowKey : rowKeys) {
-            for (C columnKey : columnKeys) {
-                V val = table.get(rowKey, columnKey);
-                kryo.writeClassAndObject(output, val);
+
+        final int rows = rowKeys.size();
+        final int columns = columnKeys.size();
+        ValueType valueType = null;
+        int nulls = 0;
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < rows; row++) {
+                final V value = table.at(row, column);
+                if (value == null) {
+                    nulls++;
+                } else if (valueType == null) {
+                    valueType = ValueType.of(value.getClass());
+                    if (valueType == null) {
+                        writeGeneric(kryo, output, table, rows, columns);
+                        return;
+                    }
+                } else if (value.getClass() != valueType.type) {
+                    writeGeneric(kryo, output, table, rows, columns);
+                    return;
+                }
+            }
+        }
+
+        if (valueType == null) {
+            output.writeVarInt(ALL_NULL, true);
+            return;
+        }
+        output.writeVarInt(TYPED, true);
+        output.writeVarInt(valueType.ordinal(), true);
+        output.writeBoolean(nulls > 0);
+        if (nulls > 0) {
+            final long[] nullBits = new long[(rows * columns + 63) >>> 6];
+            for (int column = 0, cell = 0; column < columns; column++) {
+                for (int row = 0; row < rows; row++, cell++) {
+                    if (table.at(row, column) == null) {
+                        nullBits[cell >>> 6] |= 1L << cell;
+                    }
+                }
+            }
+            output.writeLongs(nullBits, 0, nullBits.length);
+        }
+
+        final Object[] values = new Object[rows];
+        for (int column = 0; column < columns; column++) {
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                final V value = table.at(row, column);
+                if (value != null) {
+                    values[count++] = value;
+                }
+            }
+            valueType.write(output, values, count);
+        }
+    }
+
+    private void writeGeneric(Kryo kryo, Output output, ArrayTable<R, C, V> table, int rows, int columns) {
+        output.writeVarInt(GENERIC, true);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                kryo.writeClassAndObject(output, table.at(row, column));
             }
         }
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public ArrayTable<R, C, V> read(Kryo kryo, Input input, Class<? extends ArrayTable<R, C, V>> type) {
         List<R> rowKeys = (List<R>) kryo.readClassAndObject(input);
         List<C> columnKeys = (List<C>) kryo.readClassAndObject(input);
         ArrayTable<R, C, V> table = ArrayTable.create(rowKeys, columnKeys);
-        for (R rowKey : rowKeys) {
-            for (C columnKey : columnKeys) {
-                V val = (V) kryo.readClassAndObject(input);
-                table.put(rowKey, columnKey, val);
+
+        final int rows = rowKeys.size();
+        final int columns = columnKeys.size();
+        final int mode = input.readVarInt(true);
+        if (mode == GENERIC) {
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    table.set(row, column, (V) kryo.readClassAndObject(input));
+                }
+            }
+        } else if (mode == TYPED) {
+            final ValueType valueType = ValueType.values()[input.readVarInt(true)];
+            final long[] nullBits = input.readBoolean() ? input.readLongs((rows * columns + 63) >>> 6) : null;
+            for (int column = 0; column < columns; column++) {
+                int count = rows;
+                if (nullBits != null) {
+                    for (int row = 0, cell = column * rows; row < rows; row++, cell++) {
+                        if ((nullBits[cell >>> 6] & 1L << cell) != 0) {
+                            count--;
+                        }
+                    }
+                }
+                final Object[] values = valueType.read(input, count);
+                for (int row = 0, cell = column * rows, i = 0; row < rows; row++, cell++) {
+                    if (nullBits == null || (nullBits[cell >>> 6] & 1L << cell) == 0) {
+                        table.set(row, column, (V) values[i++]);
+                    }
+                }
             }
         }
         return table;
@@ -52,7 +147,225 @@ public class ArrayTableSerializer<R, C, V> extends TableSerializerBase<R, C, V,
 
     @Override
     public ArrayTable<R, C, V> copy(final Kryo kryo, final ArrayTable<R, C, V> original) {
-        return ArrayTable.create(original);
+        // shares the row/column key lists and indexes of the original
+        final ArrayTable<R, C, V> copy = ArrayTable.create(original);
+        kryo.reference(copy);
+        final int rows = original.rowKeyList().size();
+        final int columns = original.columnKeyList().size();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final V value = original.at(row, column);
+                if (value != null) {
+                    copy.set(row, column, kryo.copy(value));
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * The value types of tables that are written per column (in bulk).
+     */
+    private enum ValueType {
+        INTEGER(Integer.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final int[] result = new int[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Integer) values[i];
+                }
+                output.writeInts(result, 0, count, false);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final int[] values = input.readInts(count, false);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        LONG(Long.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final long[] result = new long[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Long) values[i];
+                }
+                output.writeLongs(result, 0, count, false);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final long[] values = input.readLongs(count, false);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        DOUBLE(Double.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final double[] result = new double[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Double) values[i];
+                }
+                output.writeDoubles(result, 0, count);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final double[] values = input.readDoubles(count);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        FLOAT(Float.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final float[] result = new float[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Float) values[i];
+                }
+                output.writeFloats(result, 0, count);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final float[] values = input.readFloats(count);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        SHORT(Short.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final short[] result = new short[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Short) values[i];
+                }
+                output.writeShorts(result, 0, count);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final short[] values = input.readShorts(count);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        BYTE(Byte.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final byte[] result = new byte[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Byte) values[i];
+                }
+                output.writeBytes(result, 0, count);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final byte[] values = input.readBytes(count);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        CHARACTER(Character.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final char[] result = new char[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Character) values[i];
+                }
+                output.writeChars(result, 0, count);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final char[] values = input.readChars(count);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        BOOLEAN(Boolean.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                final boolean[] result = new boolean[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = (Boolean) values[i];
+                }
+                output.writeBooleans(result, 0, count);
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final boolean[] values = input.readBooleans(count);
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = values[i];
+                }
+                return result;
+            }
+        },
+        STRING(String.class) {
+            @Override
+            void write(Output output, Object[] values, int count) {
+                for (int i = 0; i < count; i++) {
+                    output.writeString((String) values[i]);
+                }
+            }
+
+            @Override
+            Object[] read(Input input, int count) {
+                final Object[] result = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    result[i] = input.readString();
+                }
+                return result;
+            }
+        };
+
+        final Class<?> type;
+
+        ValueType(Class<?> type) {
+            this.type = type;
+        }
+
+        /**
+         * Writes the first <code>count</code> values.
+         */
+        abstract void write(Output output, Object[] values, int count);
+
+        abstract Object[] read(Input input, int count);
+
+        static ValueType of(Class<?> type) {
+            for (ValueType valueType : values()) {
+                if (valueType.type == type) {
+                    return valueType;
+                }
+            }
+            return null;
+        }
     }
 
     /* kryo.getSerializer (invoking kryo.getRegistration) throws an exception if registration is required,
@@ -25,8 +25,10 @@ public class HashBasedTableSerializer<R, C, V> extends TableSerializerBase<R, C,
 
     @Override
     public HashBasedTable<R, C, V> read(Kryo kryo, Input input, Class<? extends HashBasedTable<R, C, V>> type) {
-        HashBasedTable<R, C, V> table = HashBasedTable.create();
-        super.readTable(kryo, input, table);
+        final int rows = input.readVarInt(true);
+        final int cells = input.readVarInt(true);
+        final HashBasedTable<R, C, V> table = HashBasedTable.create(rows, rows == 0 ? 0 : (cells + rows - 1) / rows);
+        super.readRows(kryo, input, rows, putInto(table));
         return table;
     }
 
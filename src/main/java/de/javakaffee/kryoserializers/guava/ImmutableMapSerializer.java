@@ -1,5 +1,8 @@
 package de.javakaffee.kryoserializers.guava;
 
+import static com.esotericsoftware.minlog.Log.TRACE;
+import static com.esotericsoftware.minlog.Log.trace;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
@@ -8,32 +11,118 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Maps;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.Map;
 
 
 /**
  * A kryo {@link Serializer} for guava-libraries {@link ImmutableMap}.
+ * <p>
+ * The entries are written in iteration order and read into an {@link ImmutableMap.Builder}
+ * that's presized if possible, so that the order is retained. Maps with enum keys
+ * (<code>ImmutableEnumMap</code>) are written with the enum class and the ordinals of the keys.
+ * </p>
  */
 public class ImmutableMapSerializer extends Serializer<ImmutableMap<Object, ? extends Object>> {
 
     private static final boolean DOES_NOT_ACCEPT_NULL = true;
     private static final boolean IMMUTABLE = true;
 
+    private static final int ENUM_KEYS = 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final Class<? extends ImmutableMap> IMMUTABLE_ENUM_MAP_CLASS =
+            Maps.immutableEnumMap(new EnumMap<DummyEnum, Object>(ImmutableMap.of(DummyEnum.VALUE1, 1, DummyEnum.VALUE2, 2))).getClass();
+
+    /**
+     * Creates a presized {@link ImmutableMap.Builder}, either via <code>ImmutableMap.builderWithExpectedSize</code>
+     * (guava 23.1+) or via the package private <code>Builder(int)</code> constructor,
+     * <code>null</code> if neither is accessible.
+     */
+    private static final MethodHandle PRESIZED_BUILDER = createPresizedBuilderOrNull();
+
     public ImmutableMapSerializer() {
         super(DOES_NOT_ACCEPT_NULL, IMMUTABLE);
     }
 
     @Override
     public void write(Kryo kryo, Output output, ImmutableMap<Object, ? extends Object> immutableMap) {
-        kryo.writeObject(output, Maps.newHashMap(immutableMap));
+        if (immutableMap.getClass() == IMMUTABLE_ENUM_MAP_CLASS) {
+            output.writeVarInt(immutableMap.size() << 1 | ENUM_KEYS, true);
+            kryo.writeClass(output, ((Enum<?>) immutableMap.keySet().iterator().next()).getDeclaringClass());
+            for (Map.Entry<Object, ? extends Object> entry : immutableMap.entrySet()) {
+                output.writeVarInt(((Enum<?>) entry.getKey()).ordinal(), true);
+                kryo.writeClassAndObject(output, entry.getValue());
+            }
+            return;
+        }
+
+        output.writeVarInt(immutableMap.size() << 1, true);
+        for (Map.Entry<Object, ? extends Object> entry : immutableMap.entrySet()) {
+            kryo.writeClassAndObject(output, entry.getKey());
+            kryo.writeClassAndObject(output, entry.getValue());
+        }
     }
 
     @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
     public ImmutableMap<Object, Object> read(Kryo kryo, Input input, Class<? extends ImmutableMap<Object, ? extends Object>> type) {
-        Map map = kryo.readObject(input, HashMap.class);
-        return ImmutableMap.copyOf(map);
+        final int header = input.readVarInt(true);
+        final int size = header >>> 1;
+        if ((header & ENUM_KEYS) != 0) {
+            final Class<? extends Enum> enumType = kryo.readClass(input).getType();
+            final Enum[] constants = enumType.getEnumConstants();
+            final EnumMap map = new EnumMap(enumType);
+            for (int i = 0; i < size; i++) {
+                final Enum key = constants[input.readVarInt(true)];
+                map.put(key, kryo.readClassAndObject(input));
+            }
+            return Maps.immutableEnumMap(map);
+        }
+
+        if (size == 0) {
+            return ImmutableMap.of();
+        }
+        final ImmutableMap.Builder<Object, Object> builder = newBuilder(size);
+        for (int i = 0; i < size; i++) {
+            final Object key = kryo.readClassAndObject(input);
+            builder.put(key, kryo.readClassAndObject(input));
+        }
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ImmutableMap.Builder<Object, Object> newBuilder(final int size) {
+        if (PRESIZED_BUILDER == null) {
+            return ImmutableMap.builder();
+        }
+        try {
+            return (ImmutableMap.Builder<Object, Object>) PRESIZED_BUILDER.invokeExact(size);
+        } catch (final Throwable e) {
+            throw new RuntimeException("Could not create ImmutableMap.Builder", e);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static MethodHandle createPresizedBuilderOrNull() {
+        final MethodType type = MethodType.methodType(ImmutableMap.Builder.class, int.class);
+        try {
+            return MethodHandles.publicLookup().findStatic(ImmutableMap.class, "builderWithExpectedSize", type);
+        } catch (final Exception e) {
+            // guava < 23.1
+        }
+        try {
+            final Constructor<ImmutableMap.Builder> constructor = ImmutableMap.Builder.class.getDeclaredConstructor(int.class);
+            constructor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(constructor).asType(type);
+        } catch (final Exception e) {
+            if (TRACE) trace("kryo", "Cannot access ImmutableMap.Builder(int), builders won't be presized: " + e);
+            return null;
+        }
     }
 
     /**
@@ -44,7 +133,7 @@ public class ImmutableMapSerializer extends Serializer<ImmutableMap<Object, ? ex
      */
     public static void registerSerializers(final Kryo kryo) {
 
-        // we're writing a HashMap, therefore we should register it
+        // HashMap was written by former versions, keep the registration (ids) stable
         kryo.register(java.util.HashMap.class);
 
         final ImmutableMapSerializer serializer = new ImmutableMapSerializer();
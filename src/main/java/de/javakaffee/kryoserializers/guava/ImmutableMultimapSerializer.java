@@ -13,12 +13,17 @@ import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A kryo {@link Serializer} for guava-libraries {@link ImmutableMultimap}.
+ * <p>
+ * The multimap is written as number of keys, followed by each key with its number of values and the values.
+ * If the type to read is an {@link ImmutableSetMultimap} the values are read into an
+ * {@link ImmutableSetMultimap.Builder}, otherwise into an {@link ImmutableListMultimap.Builder}.
+ * </p>
  */
 public class ImmutableMultimapSerializer extends Serializer<ImmutableMultimap<Object, Object>> {
 
@@ -31,27 +36,31 @@ public class ImmutableMultimapSerializer extends Serializer<ImmutableMultimap<Ob
 
     @Override
     public void write(Kryo kryo, Output output, ImmutableMultimap<Object, Object> immutableMultiMap) {
-        kryo.writeObject(output, ImmutableMap.copyOf(immutableMultiMap.asMap()));
+        final ImmutableMap<Object, Collection<Object>> map = immutableMultiMap.asMap();
+        output.writeVarInt(map.size(), true);
+        for (Map.Entry<Object, Collection<Object>> entry : map.entrySet()) {
+            kryo.writeClassAndObject(output, entry.getKey());
+            output.writeVarInt(entry.getValue().size(), true);
+            for (Object value : entry.getValue()) {
+                kryo.writeClassAndObject(output, value);
+            }
+        }
     }
 
     @Override
     public ImmutableMultimap<Object, Object> read(Kryo kryo, Input input, Class<? extends ImmutableMultimap<Object, Object>> type) {
-        final ImmutableMultimap.Builder builder;
-        if (type.equals (ImmutableListMultimap.class)) {
-            builder = ImmutableMultimap.builder();
-        }
-        else if (type.equals (ImmutableSetMultimap.class)) {
-            builder = ImmutableSetMultimap.builder();
-        }
-        else {
-            builder = ImmutableMultimap.builder();
-        }
-
-        final Map map = kryo.readObject(input, ImmutableMap.class);
-        final Set<Map.Entry<Object, List<? extends Object>>> entries = map.entrySet();
-
-        for (Map.Entry<Object, List<? extends Object>> entry : entries) {
-            builder.putAll(entry.getKey(), entry.getValue());
+        final ImmutableMultimap.Builder<Object, Object> builder = ImmutableSetMultimap.class.isAssignableFrom(type)
+                ? ImmutableSetMultimap.builder()
+                : ImmutableListMultimap.builder();
+
+        final int keys = input.readVarInt(true);
+        for (int i = 0; i < keys; i++) {
+            final Object key = kryo.readClassAndObject(input);
+            final Object[] values = new Object[input.readVarInt(true)];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = kryo.readClassAndObject(input);
+            }
+            builder.putAll(key, Arrays.asList(values));
         }
 
         return builder.build();
@@ -73,25 +82,19 @@ public class ImmutableMultimapSerializer extends Serializer<ImmutableMultimap<Ob
      */
     public static void registerSerializers(final Kryo kryo) {
 
-        // ImmutableMap is used by ImmutableMultimap. However,
-        // we already have a separate serializer class for ImmutableMap,
-        // ImmutableMapSerializer. If it is not already being used, register it.
+        // ImmutableMap, ImmutableList and ImmutableSet were written by former versions
+        // of this serializer, they're still registered to keep registrations (ids) stable.
+        // If the separate serializer classes are not already being used, register them.
         Serializer immutableMapSerializer = getSerializer(kryo, ImmutableMap.class);
         if (!(immutableMapSerializer instanceof ImmutableMapSerializer)) {
             ImmutableMapSerializer.registerSerializers(kryo);
         }
 
-        // ImmutableList is used by ImmutableListMultimap. However,
-        // we already have a separate serializer class for ImmutableList,
-        // ImmutableListSerializer. If it is not already being used, register it.
         Serializer immutableListSerializer = getSerializer(kryo, ImmutableList.class);
         if (!(immutableListSerializer instanceof ImmutableListSerializer)) {
             ImmutableListSerializer.registerSerializers(kryo);
         }
 
-        // ImmutableSet is used by ImmutableSetMultimap. However,
-        // we already have a separate serializer class for ImmutableSet,
-        // ImmutableSetSerializer. If it is not already being used, register it.
         Serializer immutableSetSerializer = getSerializer(kryo, ImmutableSet.class);
         if (!(immutableSetSerializer instanceof ImmutableSetSerializer)) {
             ImmutableSetSerializer.registerSerializers(kryo);
@@ -5,34 +5,63 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.ImmutableSortedMap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.SortedMap;
 
 
 /**
  * A kryo {@link Serializer} for guava-libraries {@link ImmutableSortedMap}.
+ * <p>
+ * The comparator is written (<code>null</code> for natural ordering), followed by the entries in
+ * sorted order. On read the entries are passed to {@link ImmutableSortedMap#copyOfSorted(SortedMap)}
+ * so that they are not sorted (compared) again.
+ * </p>
  */
 public class ImmutableSortedMapSerializer extends Serializer<ImmutableSortedMap<Object, ? extends Object>> {
 
     private static final boolean DOES_NOT_ACCEPT_NULL = true;
     private static final boolean IMMUTABLE = true;
 
+    private static final Comparator<?> NATURAL_ORDER = Ordering.natural();
+
     public ImmutableSortedMapSerializer() {
         super(DOES_NOT_ACCEPT_NULL, IMMUTABLE);
     }
 
     @Override
     public void write(Kryo kryo, Output output, ImmutableSortedMap<Object, ? extends Object> immutableMap) {
-        kryo.writeObject(output, Maps.newTreeMap(immutableMap));
+        final Comparator<? super Object> comparator = immutableMap.comparator();
+        kryo.writeClassAndObject(output, comparator == NATURAL_ORDER ? null : comparator);
+        output.writeVarInt(immutableMap.size(), true);
+        for (Map.Entry<Object, ? extends Object> entry : immutableMap.entrySet()) {
+            kryo.writeClassAndObject(output, entry.getKey());
+            kryo.writeClassAndObject(output, entry.getValue());
+        }
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public ImmutableSortedMap<Object, Object> read(Kryo kryo, Input input, Class<? extends ImmutableSortedMap<Object, ? extends Object>> type) {
-        Map map = kryo.readObject(input, TreeMap.class);
-        return ImmutableSortedMap.copyOf(map);
+        Comparator<Object> comparator = (Comparator<Object>) kryo.readClassAndObject(input);
+        if (comparator == null) {
+            comparator = (Comparator<Object>) NATURAL_ORDER;
+        }
+        final int size = input.readVarInt(true);
+        final Map.Entry<Object, Object>[] entries = new Map.Entry[size];
+        for (int i = 0; i < size; i++) {
+            final Object key = kryo.readClassAndObject(input);
+            entries[i] = new AbstractMap.SimpleImmutableEntry<Object, Object>(key, kryo.readClassAndObject(input));
+        }
+        return ImmutableSortedMap.copyOfSorted(new SortedEntries(comparator, entries));
     }
 
     /**
@@ -43,7 +72,7 @@ public class ImmutableSortedMapSerializer extends Serializer<ImmutableSortedMap<
      */
     public static void registerSerializers(final Kryo kryo) {
 
-        // we're writing a TreeMap, therefore we should register it
+        // TreeMap was written by former versions, keep the registration (ids) stable
         kryo.register(java.util.TreeMap.class);
 
         final ImmutableSortedMapSerializer serializer = new ImmutableSortedMapSerializer();
@@ -77,6 +106,76 @@ public class ImmutableSortedMapSerializer extends Serializer<ImmutableSortedMap<
         kryo.register(ImmutableSortedMap.copyOf(enumMap).getClass(), serializer);
     }
 
+    /**
+     * A {@link SortedMap} view of already sorted entries, only supports what's needed by
+     * {@link ImmutableSortedMap#copyOfSorted(SortedMap)}.
+     */
+    private static class SortedEntries extends AbstractMap<Object, Object> implements SortedMap<Object, Object> {
+
+        private final Comparator<Object> _comparator;
+        private final Map.Entry<Object, Object>[] _entries;
+
+        SortedEntries(final Comparator<Object> comparator, final Map.Entry<Object, Object>[] entries) {
+            _comparator = comparator;
+            _entries = entries;
+        }
+
+        @Override
+        public Comparator<? super Object> comparator() {
+            return _comparator;
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<Object, Object>>() {
+                @Override
+                public Iterator<Map.Entry<Object, Object>> iterator() {
+                    return Arrays.asList(_entries).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return _entries.length;
+                }
+
+                @Override
+                public <T> T[] toArray(final T[] a) {
+                    return Arrays.asList(_entries).toArray(a);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return _entries.length;
+        }
+
+        @Override
+        public SortedMap<Object, Object> subMap(final Object fromKey, final Object toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<Object, Object> headMap(final Object toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<Object, Object> tailMap(final Object fromKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object firstKey() {
+            return _entries[0].getKey();
+        }
+
+        @Override
+        public Object lastKey() {
+            return _entries[_entries.length - 1].getKey();
+        }
+    }
+
     private enum DummyEnum {
         VALUE1,
         VALUE2
@@ -5,23 +5,37 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.SortedSet;
 
 /**
  * A kryo {@link Serializer} for guava-libraries {@link ImmutableSortedSet}.
+ * <p>
+ * The comparator is written (<code>null</code> for natural ordering), followed by the elements in
+ * sorted order. On read the elements are passed to {@link ImmutableSortedSet#copyOfSorted(SortedSet)}
+ * so that they are not sorted (compared) again.
+ * </p>
  */
 public class ImmutableSortedSetSerializer extends Serializer<ImmutableSortedSet<Object>> {
 
   private static final boolean DOES_NOT_ACCEPT_NULL = false;
   private static final boolean IMMUTABLE = true;
 
+  private static final Comparator<?> NATURAL_ORDER = Ordering.natural();
+
   public ImmutableSortedSetSerializer() {
     super(DOES_NOT_ACCEPT_NULL, IMMUTABLE);
   }
 
   @Override
   public void write(Kryo kryo, Output output, ImmutableSortedSet<Object> object) {
-    kryo.writeClassAndObject(output, object.comparator());
+    final Comparator<? super Object> comparator = object.comparator();
+    kryo.writeClassAndObject(output, comparator == NATURAL_ORDER ? null : comparator);
     output.writeInt(object.size(), true);
     for (Object elm : object) {
       kryo.writeClassAndObject(output, elm);
@@ -29,14 +43,18 @@ public class ImmutableSortedSetSerializer extends Serializer<ImmutableSortedSet<
   }
 
   @Override
+  @SuppressWarnings ("unchecked")
   public ImmutableSortedSet<Object> read(Kryo kryo, Input input, Class<? extends ImmutableSortedSet<Object>> type) {
-    @SuppressWarnings ("unchecked")
-    ImmutableSortedSet.Builder<Object> builder = ImmutableSortedSet.orderedBy((Comparator<Object>)kryo.readClassAndObject (input));
+    Comparator<Object> comparator = (Comparator<Object>)kryo.readClassAndObject (input);
+    if (comparator == null) {
+      comparator = (Comparator<Object>) NATURAL_ORDER;
+    }
     final int size = input.readInt(true);
+    final Object[] elements = new Object[size];
     for (int i = 0; i < size; ++i) {
-      builder.add(kryo.readClassAndObject(input));
+      elements[i] = kryo.readClassAndObject(input);
     }
-    return builder.build();
+    return ImmutableSortedSet.copyOfSorted(new SortedElements(comparator, elements));
   }
 
   /**
@@ -59,4 +77,64 @@ public class ImmutableSortedSetSerializer extends Serializer<ImmutableSortedSet<
     kryo.register(ImmutableSortedSet.of("").getClass(), serializer);
     kryo.register(ImmutableSortedSet.of().descendingSet ().getClass(), serializer);
   }
+
+  /**
+   * A {@link SortedSet} view of already sorted elements, only supports what's needed by
+   * {@link ImmutableSortedSet#copyOfSorted(SortedSet)}.
+   */
+  private static class SortedElements extends AbstractSet<Object> implements SortedSet<Object> {
+
+    private final Comparator<Object> _comparator;
+    private final Object[] _elements;
+
+    SortedElements(final Comparator<Object> comparator, final Object[] elements) {
+      _comparator = comparator;
+      _elements = elements;
+    }
+
+    @Override
+    public Comparator<? super Object> comparator() {
+      return _comparator;
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+      return Arrays.asList(_elements).iterator();
+    }
+
+    @Override
+    public int size() {
+      return _elements.length;
+    }
+
+    @Override
+    public Object[] toArray() {
+      return _elements;
+    }
+
+    @Override
+    public SortedSet<Object> subSet(final Object fromElement, final Object toElement) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<Object> headSet(final Object toElement) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<Object> tailSet(final Object fromElement) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object first() {
+      return _elements[0];
+    }
+
+    @Override
+    public Object last() {
+      return _elements[_elements.length - 1];
+    }
+  }
 }
@@ -4,10 +4,32 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Base class for kryo {@link Serializer}s of guava-libraries {@link Multimap}s.
+ * <p>
+ * The multimap is written as runs of values with the same key, i.e. each key is written once per
+ * run followed by the number of values and the values. For multimaps that iterate their entries grouped
+ * by key there's one run per key, for {@link LinkedListMultimap} and {@link LinkedHashMultimap} runs
+ * are built from consecutive entries with the same key so that the entry order is retained.
+ * </p>
+ * <p>
+ * The header is the negated number of runs (written as positive optimized varint, so it always
+ * takes 5 bytes), an empty multimap is written as <code>0</code>. A positive header is read as
+ * size of the former format that wrote each entry as key and value. The former format started
+ * with the size as varint, so every first byte is a valid start of a former stream and a shorter
+ * format marker is not possible; the negative header is the only sentinel the formats can be told
+ * apart by.
+ * </p>
+ */
 public abstract class MultimapSerializerBase<K, V, T extends Multimap<K, V>> extends Serializer<T> {
 
     public MultimapSerializerBase(boolean acceptsNull, boolean immutable) {
@@ -15,19 +37,72 @@ public abstract class MultimapSerializerBase<K, V, T extends Multimap<K, V>> ext
     }
 
     protected void writeMultimap(Kryo kryo, Output output, Multimap<K, V> multimap) {
-        output.writeInt(multimap.size(), true);
+        if (multimap.isEmpty()) {
+            output.writeInt(0, true);
+        } else if (multimap instanceof LinkedListMultimap || multimap instanceof LinkedHashMultimap) {
+            writeEntryRuns(kryo, output, multimap);
+        } else {
+            output.writeInt(-multimap.keySet().size(), true);
+            for (final Map.Entry<K, Collection<V>> entry : multimap.asMap().entrySet()) {
+                kryo.writeClassAndObject(output, entry.getKey());
+                output.writeInt(entry.getValue().size(), true);
+                for (final V value : entry.getValue()) {
+                    kryo.writeClassAndObject(output, value);
+                }
+            }
+        }
+    }
+
+    private void writeEntryRuns(Kryo kryo, Output output, Multimap<K, V> multimap) {
+        int runs = 0;
+        K key = null;
         for (final Map.Entry<K, V> entry : multimap.entries()) {
-            kryo.writeClassAndObject(output, entry.getKey());
-            kryo.writeClassAndObject(output, entry.getValue());
+            if (runs == 0 || !Objects.equals(key, entry.getKey())) {
+                key = entry.getKey();
+                runs++;
+            }
+        }
+        output.writeInt(-runs, true);
+
+        final Iterator<Map.Entry<K, V>> iter = multimap.entries().iterator();
+        Map.Entry<K, V> next = iter.next();
+        while (next != null) {
+            key = next.getKey();
+            kryo.writeClassAndObject(output, key);
+            // buffer the values of the run, its length is written in front of them
+            final Object[] values = new Object[multimap.get(key).size()];
+            int count = 0;
+            do {
+                values[count++] = next.getValue();
+                next = iter.hasNext() ? iter.next() : null;
+            } while (next != null && Objects.equals(key, next.getKey()));
+            output.writeInt(count, true);
+            for (int i = 0; i < count; i++) {
+                kryo.writeClassAndObject(output, values[i]);
+            }
         }
     }
 
     protected void readMultimap(Kryo kryo, Input input, Multimap<K, V> multimap) {
-        final int size = input.readInt(true);
-        for (int i = 0; i < size; ++i) {
+        final int header = input.readInt(true);
+        if (header >= 0) {
+            // format of former versions: size followed by keys and values
+            for (int i = 0; i < header; ++i) {
+                final K key = (K) kryo.readClassAndObject(input);
+                final V value = (V) kryo.readClassAndObject(input);
+                multimap.put(key, value);
+            }
+            return;
+        }
+
+        final int runs = -header;
+        for (int i = 0; i < runs; i++) {
             final K key = (K) kryo.readClassAndObject(input);
-            final V value = (V) kryo.readClassAndObject(input);
-            multimap.put(key, value);
+            final Object[] values = new Object[input.readInt(true)];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = kryo.readClassAndObject(input);
+            }
+            multimap.putAll(key, (Collection<V>) Arrays.asList(values));
         }
     }
 
@@ -6,9 +6,19 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.Table;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-
+/**
+ * Base class for kryo {@link Serializer}s of guava-libraries {@link Table}s.
+ * <p>
+ * A table is written as number of rows and number of cells, followed by the rows. Each row is written
+ * as row key, number of cells and its cells as column key and value. A column key is written only once
+ * per table, further occurrences are written as index of the column key.
+ * </p>
+ */
 public abstract class TableSerializerBase<R, C, V, T extends Table<R, C, V>> extends Serializer<T> {
 
     public TableSerializerBase(boolean doesNotAcceptNull, boolean immutable) {
@@ -16,42 +26,70 @@ public abstract class TableSerializerBase<R, C, V, T extends Table<R, C, V>> ext
     }
 
     public void writeTable(Kryo kryo, Output output, Table<R, C, V> table) {
-        Map<R, Map<C, V>> rowMap = table.rowMap();
-        output.writeInt(rowMap.size(), true);
-        for (R r : rowMap.keySet()) {
-            kryo.writeClassAndObject(output, r);
-            Map<C, V> colMap = rowMap.get(r);
-            output.writeInt(colMap.size(), true);
-            for (C c : colMap.keySet()) {
-                V v = colMap.get(c);
-                kryo.writeClassAndObject(output, c);
-                kryo.writeClassAndObject(output, v);
+        final Map<R, Map<C, V>> rowMap = table.rowMap();
+        output.writeVarInt(rowMap.size(), true);
+        output.writeVarInt(table.size(), true);
+        final Map<C, Integer> columnIds = new HashMap<C, Integer>();
+        for (final Map.Entry<R, Map<C, V>> row : rowMap.entrySet()) {
+            kryo.writeClassAndObject(output, row.getKey());
+            output.writeVarInt(row.getValue().size(), true);
+            for (final Map.Entry<C, V> cell : row.getValue().entrySet()) {
+                final Integer columnId = columnIds.get(cell.getKey());
+                if (columnId != null) {
+                    output.writeVarInt(columnId, true);
+                } else {
+                    output.writeVarInt(0, true);
+                    kryo.writeClassAndObject(output, cell.getKey());
+                    columnIds.put(cell.getKey(), columnIds.size() + 1);
+                }
+                kryo.writeClassAndObject(output, cell.getValue());
             }
         }
     }
 
     public void readTable(Kryo kryo, Input input, final Table<R, C, V> table) {
-        this.readTable(kryo, input, new CellConsumer<R, C, V>() {
-            @Override
-            public void accept(R r, C c, V v) {
-                table.put(r, c, v);
-            }
-        });
+        this.readTable(kryo, input, putInto(table));
     }
 
     public void readTable(Kryo kryo, Input input, CellConsumer<R, C, V> cellConsumer) {
-        int rows = input.readInt(true);
+        final int rows = input.readVarInt(true);
+        input.readVarInt(true); // cells
+        readRows(kryo, input, rows, cellConsumer);
+    }
+
+    /**
+     * Reads the rows of a table after its number of rows and number of cells were read
+     * (e.g. to create a presized table).
+     */
+    protected void readRows(Kryo kryo, Input input, int rows, CellConsumer<R, C, V> cellConsumer) {
+        final List<C> columnKeys = new ArrayList<C>();
         for (int i = 0; i < rows; i++) {
-            R r = (R) kryo.readClassAndObject(input);
-            int cols = input.readInt(true);
+            final R r = (R) kryo.readClassAndObject(input);
+            final int cols = input.readVarInt(true);
             for (int j = 0; j < cols; j++) {
-                C c = (C) kryo.readClassAndObject(input);
-                V v = (V) kryo.readClassAndObject(input);
+                final int columnId = input.readVarInt(true);
+                final C c;
+                if (columnId == 0) {
+                    c = (C) kryo.readClassAndObject(input);
+                    columnKeys.add(c);
+                } else {
+                    c = columnKeys.get(columnId - 1);
+                }
+                final V v = (V) kryo.readClassAndObject(input);
                 cellConsumer.accept(r, c, v);
             }
         }
     }
 
+    protected static <R, C, V> CellConsumer<R, C, V> putInto(final Table<R, C, V> table) {
+        return new CellConsumer<R, C, V>() {
+            @Override
+            public void accept(R r, C c, V v) {
+                table.put(r, c, v);
+            }
+        };
+    }
+
     interface CellConsumer<R, C, V> {
         void accept(R rowKey, C columnKey, V value);
     }
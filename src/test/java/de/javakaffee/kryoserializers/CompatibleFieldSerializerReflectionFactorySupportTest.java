@@ -0,0 +1,153 @@
+package de.javakaffee.kryoserializers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.testng.annotations.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+
+/**
+ * Test for {@link CompatibleFieldSerializerReflectionFactorySupport}.
+ *
+ * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
+ */
+public class CompatibleFieldSerializerReflectionFactorySupportTest {
+
+    public static class Bean {
+        private final String name;
+        private String description;
+        private int count;
+
+        public Bean( final String name ) {
+            this.name = name;
+        }
+    }
+
+    private Kryo createKryo( final String... removedFields ) {
+        final Kryo kryo = new Kryo();
+        final CompatibleFieldSerializerReflectionFactorySupport serializer =
+                new CompatibleFieldSerializerReflectionFactorySupport( kryo, Bean.class );
+        for ( final String field : removedFields ) {
+            serializer.removeField( field );
+        }
+        kryo.register( Bean.class, serializer );
+        return kryo;
+    }
+
+    /**
+     * The schema is read by the serializer itself, this must match the format of the
+     * {@link CompatibleFieldSerializer}.
+     */
+    @Test
+    public void testCompatibleFieldSerializerFormat() {
+        final Kryo kryo = createKryo();
+        final Kryo compatibleKryo = new Kryo();
+        final DefaultInstantiatorStrategy instantiatorStrategy = new DefaultInstantiatorStrategy();
+        instantiatorStrategy.setFallbackInstantiatorStrategy( new StdInstantiatorStrategy() );
+        compatibleKryo.setInstantiatorStrategy( instantiatorStrategy );
+        final CompatibleFieldSerializer<Bean> compatibleSerializer = new CompatibleFieldSerializer<Bean>( compatibleKryo, Bean.class );
+        compatibleSerializer.removeField( "description" );
+        compatibleKryo.register( Bean.class, compatibleSerializer );
+
+        final Output output = new Output( 4096 );
+        final Output compatibleOutput = new Output( 4096 );
+        for ( int i = 0; i < 3; i++ ) {
+            final Bean bean = new Bean( "bean" + i );
+            bean.description = "description" + i;
+            bean.count = i;
+            kryo.writeObject( output, bean );
+            compatibleKryo.writeObject( compatibleOutput, bean );
+        }
+
+        // read by the CompatibleFieldSerializer
+        Input input = new Input( output.toBytes() );
+        for ( int i = 0; i < 3; i++ ) {
+            final Bean bean = compatibleKryo.readObject( input, Bean.class );
+            assertEquals( bean.name, "bean" + i );
+            assertNull( bean.description );
+            assertEquals( bean.count, i );
+        }
+        // written by the CompatibleFieldSerializer
+        input = new Input( compatibleOutput.toBytes() );
+        for ( int i = 0; i < 3; i++ ) {
+            final Bean bean = kryo.readObject( input, Bean.class );
+            assertEquals( bean.name, "bean" + i );
+            assertNull( bean.description );
+            assertEquals( bean.count, i );
+        }
+    }
+
+    @Test
+    public void testMultipleObjectGraphs() {
+        final Kryo kryo = createKryo();
+        final Output output = new Output( 4096 );
+        for ( int i = 0; i < 10; i++ ) {
+            final Bean bean = new Bean( "bean" + i );
+            bean.description = "description" + i;
+            bean.count = i;
+            kryo.writeObject( output, bean );
+        }
+
+        final Input input = new Input( output.toBytes() );
+        for ( int i = 0; i < 10; i++ ) {
+            final Bean bean = kryo.readObject( input, Bean.class );
+            assertEquals( bean.name, "bean" + i );
+            assertEquals( bean.description, "description" + i );
+            assertEquals( bean.count, i );
+        }
+    }
+
+    @Test
+    public void testDifferentSchemas() {
+        final Kryo oldKryo = createKryo( "description" );
+        final Kryo kryo = createKryo();
+        final Output output = new Output( 4096 );
+        for ( int i = 0; i < 4; i++ ) {
+            final Bean bean = new Bean( "bean" + i );
+            bean.description = "description" + i;
+            bean.count = i;
+            // alternate old and current schema
+            ( i % 2 == 0 ? oldKryo : kryo ).writeObject( output, bean );
+        }
+
+        final Input input = new Input( output.toBytes() );
+        for ( int i = 0; i < 4; i++ ) {
+            final Bean bean = kryo.readObject( input, Bean.class );
+            assertEquals( bean.name, "bean" + i );
+            assertEquals( bean.count, i );
+            if ( i % 2 == 0 ) {
+                assertNull( bean.description );
+            } else {
+                assertEquals( bean.description, "description" + i );
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownFields() {
+        final Kryo kryo = createKryo();
+        final Kryo newKryo = createKryo( "description" );
+        final Output output = new Output( 4096 );
+        for ( int i = 0; i < 2; i++ ) {
+            final Bean bean = new Bean( "bean" + i );
+            bean.description = "description" + i;
+            bean.count = i;
+            kryo.writeObject( output, bean );
+        }
+
+        final Input input = new Input( output.toBytes() );
+        for ( int i = 0; i < 2; i++ ) {
+            final Bean bean = newKryo.readObject( input, Bean.class );
+            assertEquals( bean.name, "bean" + i );
+            assertNull( bean.description );
+            assertEquals( bean.count, i );
+        }
+    }
+
+}
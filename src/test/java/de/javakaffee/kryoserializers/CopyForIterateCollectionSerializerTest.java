@@ -0,0 +1,143 @@
+package de.javakaffee.kryoserializers;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.DefaultSerializers.StringSerializer;
+
+/**
+ * A test case for the copy free mode of the {@link CopyForIterateCollectionSerializer}.
+ */
+public class CopyForIterateCollectionSerializerTest {
+
+    private Kryo _kryo;
+
+    @BeforeMethod
+    protected void beforeMethod() {
+        _kryo = new Kryo();
+        _kryo.register( ArrayList.class, new CopyForIterateCollectionSerializer( true ) );
+        _kryo.register( CopyOnWriteArrayList.class, new CopyForIterateCollectionSerializer( true ) );
+        _kryo.register( ConcurrentLinkedQueue.class, new CopyForIterateCollectionSerializer( true ) );
+        _kryo.register( String.class );
+    }
+
+    @DataProvider
+    public Object[][] sizes() {
+        return new Object[][] { { 0 }, { 1 }, { 1023 }, { 1024 }, { 1025 }, { 5000 } };
+    }
+
+    @Test( dataProvider = "sizes" )
+    public void testCopyOnWriteArrayList( final int size ) {
+        final CopyOnWriteArrayList<Object> list = new CopyOnWriteArrayList<Object>( createElements( size, true ) );
+        assertEquals( roundtripBuffer( list ), list );
+        assertEquals( roundtripStream( list ), list );
+    }
+
+    @Test( dataProvider = "sizes" )
+    public void testConcurrentLinkedQueue( final int size ) {
+        final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>( createElements( size ) );
+        assertEquals( new ArrayList<Object>( roundtripBuffer( queue ) ), new ArrayList<Object>( queue ) );
+        assertEquals( new ArrayList<Object>( roundtripStream( queue ) ), new ArrayList<Object>( queue ) );
+    }
+
+    @Test( dataProvider = "sizes" )
+    public void testArrayList( final int size ) {
+        final ArrayList<Object> list = new ArrayList<Object>( createElements( size, true ) );
+        assertEquals( roundtripBuffer( list ), list );
+        assertEquals( roundtripStream( list ), list );
+    }
+
+    @Test
+    public void testNestedCollections() {
+        final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>();
+        for ( int i = 0; i < 3; i++ ) {
+            queue.add( new ConcurrentLinkedQueue<Object>( createElements( 2000 ) ) );
+            queue.add( new CopyOnWriteArrayList<Object>( createElements( 10 ) ) );
+        }
+        final List<Object> expected = new ArrayList<Object>();
+        for ( final Object element : queue ) {
+            expected.add( new ArrayList<Object>( (Collection<?>) element ) );
+        }
+        final List<Object> actual = new ArrayList<Object>();
+        for ( final Object element : roundtripStream( queue ) ) {
+            actual.add( new ArrayList<Object>( (Collection<?>) element ) );
+        }
+        assertEquals( actual, expected );
+    }
+
+    @Test( dataProvider = "sizes" )
+    public void testElementSerializer( final int size ) {
+        final CountingStringSerializer elementSerializer = new CountingStringSerializer();
+        final CopyForIterateCollectionSerializer serializer = new CopyForIterateCollectionSerializer( true );
+        serializer.setElementClass( String.class, elementSerializer );
+        _kryo.register( ConcurrentLinkedQueue.class, serializer );
+        _kryo.register( CopyOnWriteArrayList.class, serializer );
+
+        final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>( createElements( size ) );
+        assertEquals( new ArrayList<Object>( roundtripBuffer( queue ) ), new ArrayList<Object>( queue ) );
+        assertEquals( new ArrayList<Object>( roundtripStream( queue ) ), new ArrayList<Object>( queue ) );
+        final CopyOnWriteArrayList<Object> list = new CopyOnWriteArrayList<Object>( createElements( size, true ) );
+        assertEquals( roundtripBuffer( list ), list );
+        assertEquals( elementSerializer.written, 3 * size - ( size + 9 ) / 10 );
+        assertEquals( elementSerializer.read, elementSerializer.written );
+    }
+
+    private static class CountingStringSerializer extends StringSerializer {
+        int written;
+        int read;
+
+        @Override
+        public void write( final Kryo kryo, final Output output, final String object ) {
+            written++;
+            super.write( kryo, output, object );
+        }
+
+        @Override
+        public String read( final Kryo kryo, final Input input, final Class<? extends String> type ) {
+            read++;
+            return super.read( kryo, input, type );
+        }
+    }
+
+    private static List<Object> createElements( final int size ) {
+        return createElements( size, false );
+    }
+
+    private static List<Object> createElements( final int size, final boolean withNulls ) {
+        final List<Object> result = new ArrayList<Object>();
+        for ( int i = 0; i < size; i++ ) {
+            result.add( withNulls && i % 10 == 0 ? null : "item" + i );
+        }
+        return result;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T> T roundtripBuffer( final T collection ) {
+        final Output output = new Output( 16, -1 );
+        _kryo.writeObject( output, collection );
+        return (T) _kryo.readObject( new Input( output.toBytes() ), collection.getClass() );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T> T roundtripStream( final T collection ) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Output output = new Output( out, 64 );
+        _kryo.writeObject( output, collection );
+        output.flush();
+        return (T) _kryo.readObject( new Input( new ByteArrayInputStream( out.toByteArray() ), 64 ), collection.getClass() );
+    }
+}
@@ -0,0 +1,172 @@
+package de.javakaffee.kryoserializers;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.DefaultSerializers.StringSerializer;
+
+/**
+ * A test case for the copy free mode of the {@link CopyForIterateMapSerializer}.
+ */
+public class CopyForIterateMapSerializerTest {
+
+    private Kryo _kryo;
+
+    @BeforeMethod
+    protected void beforeMethod() {
+        _kryo = new Kryo();
+        _kryo.register( HashMap.class, new CopyForIterateMapSerializer( true ) );
+        _kryo.register( LinkedHashMap.class, new CopyForIterateMapSerializer( true ) );
+        _kryo.register( ConcurrentHashMap.class, new CopyForIterateMapSerializer( true ) );
+        _kryo.register( ConcurrentSkipListMap.class, new CopyForIterateMapSerializer( true ) );
+        _kryo.register( String.class );
+        _kryo.register( Integer.class );
+    }
+
+    @DataProvider
+    public Object[][] sizes() {
+        return new Object[][] { { 0 }, { 1 }, { 1000 }, { 1024 }, { 1025 }, { 5000 } };
+    }
+
+    @Test( dataProvider = "sizes" )
+    public void testLinkedHashMap( final int size ) {
+        final LinkedHashMap<Object, Object> map = new LinkedHashMap<Object, Object>();
+        for ( int i = size; i > 0; i-- ) {
+            map.put( "key" + i, i % 10 == 0 ? null : i );
+        }
+        for ( final LinkedHashMap<Object, Object> deserialized : roundtrip( map ) ) {
+            assertEquals( deserialized, map );
+            // insertion order is retained
+            assertEquals( new ArrayList<Object>( deserialized.keySet() ), new ArrayList<Object>( map.keySet() ) );
+        }
+    }
+
+    @Test( dataProvider = "sizes" )
+    public void testConcurrentHashMap( final int size ) {
+        final ConcurrentHashMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+        for ( int i = 0; i < size; i++ ) {
+            map.put( "key" + i, i );
+        }
+        for ( final ConcurrentHashMap<Object, Object> deserialized : roundtrip( map ) ) {
+            assertEquals( deserialized, map );
+        }
+    }
+
+    @Test
+    public void testNestedMaps() {
+        final ConcurrentSkipListMap<Object, Object> map = new ConcurrentSkipListMap<Object, Object>();
+        for ( int i = 0; i < 10; i++ ) {
+            final HashMap<Object, Object> value = new HashMap<Object, Object>();
+            for ( int j = 0; j < i * 10; j++ ) {
+                value.put( j, "value" + j );
+            }
+            map.put( "key" + i, value );
+        }
+        for ( final ConcurrentSkipListMap<Object, Object> deserialized : roundtrip( map ) ) {
+            assertEquals( deserialized, map );
+        }
+    }
+
+    @Test( dataProvider = "sizes" )
+    public void testKeyAndValueSerializers( final int size ) {
+        final CountingStringSerializer keySerializer = new CountingStringSerializer();
+        final CountingStringSerializer valueSerializer = new CountingStringSerializer();
+        final CopyForIterateMapSerializer serializer = new CopyForIterateMapSerializer( true );
+        serializer.setKeyClass( String.class, keySerializer );
+        serializer.setValueClass( String.class, valueSerializer );
+        _kryo.register( ConcurrentHashMap.class, serializer );
+        _kryo.register( LinkedHashMap.class, serializer );
+
+        final ConcurrentHashMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+        final LinkedHashMap<Object, Object> linkedMap = new LinkedHashMap<Object, Object>();
+        for ( int i = 0; i < size; i++ ) {
+            map.put( "key" + i, "value" + i );
+            linkedMap.put( "key" + i, i % 10 == 0 ? null : "value" + i );
+        }
+        for ( final ConcurrentHashMap<Object, Object> deserialized : roundtrip( map ) ) {
+            assertEquals( deserialized, map );
+        }
+        for ( final LinkedHashMap<Object, Object> deserialized : roundtrip( linkedMap ) ) {
+            assertEquals( deserialized, linkedMap );
+        }
+        assertEquals( keySerializer.written, 4 * size );
+        assertEquals( valueSerializer.written, 4 * size - 2 * ( ( size + 9 ) / 10 ) );
+        assertEquals( keySerializer.read, keySerializer.written );
+        assertEquals( valueSerializer.read, valueSerializer.written );
+    }
+
+    @Test
+    public void testGenericKeyAndValueTypes() {
+        _kryo.register( MapHolder.class );
+        final MapHolder holder = new MapHolder();
+        for ( int i = 0; i < 100; i++ ) {
+            holder.map.put( "key" + i, i );
+        }
+        final Output typed = new Output( 4096 );
+        _kryo.writeObject( typed, holder );
+        final Output untyped = new Output( 4096 );
+        _kryo.writeObject( untyped, holder.map );
+        // keys and values are written without their class, which saves a byte for each string key
+        // (the integer values need a null marker instead)
+        assertEquals( typed.position() < untyped.position() - 90, true, typed.position() + " / " + untyped.position() );
+
+        final MapHolder deserialized = _kryo.readObject( new Input( typed.toBytes() ), MapHolder.class );
+        assertEquals( deserialized.map, holder.map );
+    }
+
+    public static class MapHolder {
+        ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<String, Integer>();
+    }
+
+    private static class CountingStringSerializer extends StringSerializer {
+        int written;
+        int read;
+
+        @Override
+        public void write( final Kryo kryo, final Output output, final String object ) {
+            written++;
+            super.write( kryo, output, object );
+        }
+
+        @Override
+        public String read( final Kryo kryo, final Input input, final Class<? extends String> type ) {
+            read++;
+            return super.read( kryo, input, type );
+        }
+    }
+
+    /**
+     * Returns the results of a roundtrip with a buffer and a stream based output.
+     */
+    @SuppressWarnings( "unchecked" )
+    private <T extends Map<?, ?>> List<T> roundtrip( final T map ) {
+        final Output output = new Output( 16, -1 );
+        _kryo.writeObject( output, map );
+        final T fromBuffer = (T) _kryo.readObject( new Input( output.toBytes() ), map.getClass() );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Output streamOutput = new Output( out, 64 );
+        _kryo.writeObject( streamOutput, map );
+        streamOutput.flush();
+        final T fromStream = (T) _kryo.readObject( new Input( new ByteArrayInputStream( out.toByteArray() ), 64 ), map.getClass() );
+
+        return Arrays.asList( fromBuffer, fromStream );
+    }
+}
@@ -10,6 +10,10 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 
 /**
  * A test case for the {@link EnumMapSerializer}.
@@ -57,4 +61,104 @@ public class EnumMapSerializerTest {
         assertNotSame(_original.get(Vipers.BLACK_MAMBA), copy.get(Vipers.BLACK_MAMBA));
         assertEquals(_original, copy);
     }
+
+	@Test
+	public void testSerializeHomogeneousValues() throws Exception {
+		final Kryo kryo = newKryo();
+		final EnumMap<Colors, String> map = new EnumMap<Colors, String>(Colors.class);
+		map.put(Colors.ORANGE, "orange");
+		map.put(Colors.BLONDE, "blonde");
+		map.put(Colors.BLUE, null);
+		assertEquals(roundtrip(kryo, map), map);
+	}
+
+	@Test
+	public void testSerializeMixedValues() throws Exception {
+		final Kryo kryo = newKryo();
+		final EnumMap<Colors, Object> map = new EnumMap<Colors, Object>(Colors.class);
+		map.put(Colors.PINK, "pink");
+		map.put(Colors.WHITE, 42);
+		map.put(Colors.BROWN, null);
+		assertEquals(roundtrip(kryo, map), map);
+	}
+
+	@Test
+	public void testSerializeEmptyAndSparse() throws Exception {
+		final Kryo kryo = newKryo();
+		final EnumMap<Character.UnicodeScript, Long> map = new EnumMap<Character.UnicodeScript, Long>(Character.UnicodeScript.class);
+		assertEquals(roundtrip(kryo, map), map);
+		// UnicodeScript has more than 64 constants, so this is written as ordinals instead of bitmap
+		map.put(Character.UnicodeScript.UNKNOWN, 1L);
+		assertEquals(roundtrip(kryo, map), map);
+		for (final Character.UnicodeScript script : Character.UnicodeScript.values()) {
+			map.put(script, (long) script.ordinal());
+		}
+		assertEquals(roundtrip(kryo, map), map);
+	}
+
+	@Test
+	public void testReadBitmapWithMoreWords() throws Exception {
+		final Kryo kryo = newKryo();
+		// as written by a jvm where the key type has more constants than here
+		final byte[] serialized = serializeRaw(kryo, new RawWriter() {
+			@Override
+			public void write(final Kryo kryo, final Output output, final Object object) {
+				kryo.writeClass(output, Colors.class);
+				output.writeInt(1, true);
+				kryo.writeClass(output, String.class);
+				output.writeVarInt(2, true);
+				output.writeVarLong(1L << Colors.PINK.ordinal(), true);
+				output.writeVarLong(0, true);
+				kryo.writeObjectOrNull(output, "pink", String.class);
+			}
+		});
+		final EnumMap<?, ?> map = KryoTest.deserialize(kryo, serialized, EnumMap.class);
+		assertEquals(map.size(), 1);
+		assertEquals(map.get(Colors.PINK), "pink");
+	}
+
+	@Test(expectedExceptions = KryoException.class)
+	public void testReadUnknownOrdinal() throws Exception {
+		final Kryo kryo = newKryo();
+		final byte[] serialized = serializeRaw(kryo, new RawWriter() {
+			@Override
+			public void write(final Kryo kryo, final Output output, final Object object) {
+				kryo.writeClass(output, Colors.class);
+				output.writeInt(1, true);
+				kryo.writeClass(output, String.class);
+				output.writeVarInt(0, true);
+				output.writeVarInt(Colors.values().length, true);
+				kryo.writeObjectOrNull(output, "unknown", String.class);
+			}
+		});
+		KryoTest.deserialize(kryo, serialized, EnumMap.class);
+	}
+
+	/**
+	 * Writes the serialized form of an {@link EnumMap} by hand.
+	 */
+	private static abstract class RawWriter extends Serializer<Object> {
+		@Override
+		public Object read(final Kryo kryo, final Input input, final Class<? extends Object> type) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static byte[] serializeRaw(final Kryo kryo, final RawWriter serializer) {
+		final Output output = new Output(4096);
+		kryo.writeObject(output, new Object(), serializer);
+		return output.toBytes();
+	}
+
+	private static Kryo newKryo() {
+		final Kryo kryo = new Kryo();
+		kryo.setRegistrationRequired(false);
+		kryo.addDefaultSerializer(EnumMap.class, new EnumMapSerializer());
+		return kryo;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T roundtrip(final Kryo kryo, final T obj) {
+		return (T) KryoTest.deserialize(kryo, KryoTest.serialize(kryo, obj), obj.getClass());
+	}
 }
@@ -0,0 +1,67 @@
+package de.javakaffee.kryoserializers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.lang.invoke.MethodHandle;
+
+import org.testng.annotations.Test;
+
+/**
+ * A test case for the {@link FieldAccessor}.
+ */
+public class FieldAccessorTest {
+
+    @SuppressWarnings("unused")
+    private static class Fields {
+        private String name = "foo";
+        private int count = 23;
+        private long total = 42L;
+        private final String constant = "bar";
+    }
+
+    @Test
+    public void testGetterAndSetter() throws Throwable {
+        final Fields fields = new Fields();
+
+        final MethodHandle name = FieldAccessor.getter(FieldAccessor.getField(Fields.class, "name"));
+        assertEquals((Object) name.invokeExact((Object) fields), "foo");
+        FieldAccessor.setter(FieldAccessor.getField(Fields.class, "name")).invokeExact((Object) fields, (Object) "baz");
+        assertEquals(fields.name, "baz");
+
+        final MethodHandle count = FieldAccessor.getter(FieldAccessor.getField(Fields.class, "count"));
+        assertEquals((int) count.invokeExact((Object) fields), 23);
+        FieldAccessor.setter(FieldAccessor.getField(Fields.class, "count")).invokeExact((Object) fields, 24);
+        assertEquals(fields.count, 24);
+
+        final MethodHandle total = FieldAccessor.getter(FieldAccessor.getField(Fields.class, "total"));
+        assertEquals((long) total.invokeExact((Object) fields), 42L);
+        FieldAccessor.setter(FieldAccessor.getField(Fields.class, "total")).invokeExact((Object) fields, 43L);
+        assertEquals(fields.total, 43L);
+
+        final MethodHandle constant = FieldAccessor.getter(FieldAccessor.getField(Fields.class, "constant"));
+        assertEquals((Object) constant.invokeExact((Object) fields), "bar");
+    }
+
+    @Test
+    public void testNullField() throws Exception {
+        assertNull(FieldAccessor.getter(null));
+        assertNull(FieldAccessor.setter(null));
+    }
+
+    @Test
+    public void testFieldFallback() throws Exception {
+        assertEquals(FieldAccessor.getField(Fields.class, "notExisting", "name").getName(), "name");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testMissingField() throws Exception {
+        FieldAccessor.getField(Fields.class, "notExisting");
+    }
+
+    @Test
+    public void testGetFieldOrNull() throws Exception {
+        assertNull(FieldAccessor.getFieldOrNull("de.javakaffee.kryoserializers.NotExisting", "field"));
+        assertNull(FieldAccessor.getFieldOrNull(Fields.class.getName(), "notExisting"));
+    }
+}
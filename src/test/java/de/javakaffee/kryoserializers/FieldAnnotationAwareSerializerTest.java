@@ -11,6 +11,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.util.Arrays;
+import java.util.Collections;
 
 import com.esotericsoftware.kryo.SerializerFactory;
 import org.testng.annotations.Test;
@@ -95,6 +96,76 @@ public class FieldAnnotationAwareSerializerTest {
         assertNull(inputBean.getSecondValue());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddAndRemoveAnnotation() throws Exception {
+        final Kryo kryo = new Kryo();
+
+        final FieldAnnotationAwareSerializer<?> disregarding = new FieldAnnotationAwareSerializer<Object>(kryo, CustomBean.class,
+                Collections.<Class<? extends Annotation>>emptySet(), true);
+        assertEquals(disregarding.getFields().length, 2);
+        assertTrue(disregarding.addAnnotation(CustomMark.class));
+        assertFalse(disregarding.addAnnotation(CustomMark.class));
+        assertEquals(disregarding.getFields().length, 1);
+        assertEquals(disregarding.getFields()[0].getName(), "secondValue");
+
+        final FieldAnnotationAwareSerializer<?> regarding = new FieldAnnotationAwareSerializer<Object>(kryo, CustomBean.class,
+                Arrays.<Class<? extends Annotation>>asList(CustomMark.class), false);
+        assertEquals(regarding.getFields().length, 1);
+        assertEquals(regarding.getFields()[0].getName(), "firstValue");
+        assertTrue(regarding.removeAnnotation(CustomMark.class));
+        assertFalse(regarding.removeAnnotation(CustomMark.class));
+        assertEquals(regarding.getFields().length, 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInheritedFieldsWithSharedScan() throws Exception {
+        final SerializerFactory factory = new FieldAnnotationAwareSerializer.Factory(
+                Arrays.<Class<? extends Annotation>>asList(CustomMark.class), true);
+        for (int i = 0; i < 2; i++) {
+            final Kryo kryo = new Kryo();
+            kryo.addDefaultSerializer(CustomBean.class, factory);
+            kryo.register(CustomSubBean.class);
+
+            final CustomSubBean outputBean = new CustomSubBean();
+            outputBean.setFirstValue(FIRST_VALUE);
+            outputBean.setSecondValue(SECOND_VALUE);
+            outputBean.thirdValue = "third";
+            outputBean.fourthValue = "fourth";
+
+            final byte[] buffer = makeBuffer();
+            kryo.writeObject(new Output(buffer), outputBean);
+            final CustomSubBean inputBean = kryo.readObject(new Input(buffer), CustomSubBean.class);
+
+            assertNull(inputBean.getFirstValue());
+            assertEquals(inputBean.getSecondValue(), SECOND_VALUE);
+            assertNull(inputBean.thirdValue);
+            assertEquals(inputBean.fourthValue, "fourth");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testShadowedFieldNames() throws Exception {
+        final Kryo kryo = new Kryo();
+        kryo.addDefaultSerializer(CustomBean.class, new FieldAnnotationAwareSerializer.Factory(
+                Arrays.<Class<? extends Annotation>>asList(CustomMark.class), true));
+        kryo.register(ShadowingSubBean.class);
+
+        final ShadowingSubBean outputBean = new ShadowingSubBean();
+        outputBean.setFirstValue(FIRST_VALUE);
+        outputBean.firstValue = "shadowing";
+
+        final byte[] buffer = makeBuffer();
+        kryo.writeObject(new Output(buffer), outputBean);
+        final ShadowingSubBean inputBean = kryo.readObject(new Input(buffer), ShadowingSubBean.class);
+
+        // only the marked field of the superclass is ignored
+        assertNull(inputBean.getFirstValue());
+        assertEquals(inputBean.firstValue, "shadowing");
+    }
+
     private static class CustomBean {
 
         @CustomMark
@@ -119,6 +190,19 @@ public class FieldAnnotationAwareSerializerTest {
         }
     }
 
+    private static class CustomSubBean extends CustomBean {
+
+        @CustomMark
+        private String thirdValue;
+
+        private String fourthValue;
+    }
+
+    private static class ShadowingSubBean extends CustomBean {
+
+        private String firstValue;
+    }
+
     @Target(ElementType.FIELD)
     @Retention(RetentionPolicy.RUNTIME)
     private static @interface CustomMark {
@@ -0,0 +1,150 @@
+package de.javakaffee.kryoserializers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+
+/**
+ * Test for {@link KryoReflectionFactorySupport}.
+ *
+ * @author <a href="mailto:martin.grotzke@javakaffee.de">Martin Grotzke</a>
+ */
+public class KryoReflectionFactorySupportTest {
+
+    private static final AtomicInteger CONSTRUCTOR_CALLS = new AtomicInteger();
+
+    public static class WithoutDefaultConstructor {
+        private final String name;
+        private String initialized = "initialized";
+
+        public WithoutDefaultConstructor( final String name ) {
+            CONSTRUCTOR_CALLS.incrementAndGet();
+            this.name = name;
+        }
+    }
+
+    public static class WithPrivateDefaultConstructor {
+        private String initialized = "initialized";
+
+        private WithPrivateDefaultConstructor() {
+            CONSTRUCTOR_CALLS.incrementAndGet();
+        }
+    }
+
+    public static class WithPublicDefaultConstructor {
+        private String initialized = "initialized";
+
+        public WithPublicDefaultConstructor() {
+            CONSTRUCTOR_CALLS.incrementAndGet();
+        }
+    }
+
+    public class Inner {
+        private String name;
+    }
+
+    private KryoReflectionFactorySupport _kryo;
+
+    @BeforeMethod
+    protected void beforeMethod() {
+        _kryo = new KryoReflectionFactorySupport();
+        CONSTRUCTOR_CALLS.set( 0 );
+    }
+
+    @Test
+    public void testWithoutDefaultConstructor() {
+        final WithoutDefaultConstructor instance = _kryo.newInstance( WithoutDefaultConstructor.class );
+        assertSame( instance.getClass(), WithoutDefaultConstructor.class );
+        assertNull( instance.name );
+        assertNull( instance.initialized );
+        assertEquals( CONSTRUCTOR_CALLS.get(), 0 );
+    }
+
+    @Test
+    public void testWithPrivateDefaultConstructor() {
+        // only public no-arg constructors are used, others are bypassed
+        final WithPrivateDefaultConstructor instance = _kryo.newInstance( WithPrivateDefaultConstructor.class );
+        assertSame( instance.getClass(), WithPrivateDefaultConstructor.class );
+        assertNull( instance.initialized );
+        assertEquals( CONSTRUCTOR_CALLS.get(), 0 );
+    }
+
+    @Test
+    public void testWithPublicDefaultConstructor() {
+        final WithPublicDefaultConstructor instance = _kryo.newInstance( WithPublicDefaultConstructor.class );
+        assertEquals( instance.initialized, "initialized" );
+        assertEquals( CONSTRUCTOR_CALLS.get(), 1 );
+    }
+
+    @Test
+    public void testRepeatedInstantiation() {
+        final WithPublicDefaultConstructor first = _kryo.newInstance( WithPublicDefaultConstructor.class );
+        final WithoutDefaultConstructor firstWithout = _kryo.newInstance( WithoutDefaultConstructor.class );
+        for ( int i = 1; i <= 10; i++ ) {
+            final WithPublicDefaultConstructor instance = _kryo.newInstance( WithPublicDefaultConstructor.class );
+            assertNotSame( instance, first );
+            assertEquals( instance.initialized, "initialized" );
+            assertEquals( CONSTRUCTOR_CALLS.get(), i + 1 );
+
+            final WithoutDefaultConstructor without = _kryo.newInstance( WithoutDefaultConstructor.class );
+            assertNotSame( without, firstWithout );
+            assertNull( without.name );
+        }
+        // the cached instantiators are shared by all instances
+        assertNotSame( new KryoReflectionFactorySupport().newInstance( WithPublicDefaultConstructor.class ), first );
+        assertEquals( CONSTRUCTOR_CALLS.get(), 12 );
+    }
+
+    @Test( expectedExceptions = IllegalArgumentException.class )
+    public void testNewInstanceNullType() {
+        _kryo.newInstance( null );
+    }
+
+    @Test
+    public void testNewInstanceFromReflectionFactory() {
+        // doesn't invoke the public no-arg constructor
+        final WithPublicDefaultConstructor instance =
+                KryoReflectionFactorySupport.newInstanceFromReflectionFactory( WithPublicDefaultConstructor.class );
+        assertSame( instance.getClass(), WithPublicDefaultConstructor.class );
+        assertNull( instance.initialized );
+        assertNotSame( KryoReflectionFactorySupport.newInstanceFromReflectionFactory( WithPublicDefaultConstructor.class ), instance );
+        assertEquals( CONSTRUCTOR_CALLS.get(), 0 );
+    }
+
+    @Test
+    public void testDefaultSerializerDoesNotIgnoreSyntheticFields() {
+        final Serializer<?> serializer = _kryo.getDefaultSerializer( Inner.class );
+        assertTrue( serializer instanceof FieldSerializer );
+        assertFalse( ( (FieldSerializer<?>) serializer ).getFieldSerializerConfig().getIgnoreSyntheticFields() );
+        assertField( (FieldSerializer<?>) serializer, "this$0" );
+    }
+
+    @Test
+    public void testAddedDefaultSerializerDoesNotIgnoreSyntheticFields() {
+        _kryo.addDefaultSerializer( Inner.class, FieldSerializer.class );
+        final Serializer<?> serializer = _kryo.getDefaultSerializer( Inner.class );
+        assertFalse( ( (FieldSerializer<?>) serializer ).getFieldSerializerConfig().getIgnoreSyntheticFields() );
+        assertField( (FieldSerializer<?>) serializer, "this$0" );
+    }
+
+    private static void assertField( final FieldSerializer<?> serializer, final String name ) {
+        for ( final FieldSerializer.CachedField field : serializer.getFields() ) {
+            if ( field.getName().equals( name ) ) {
+                return;
+            }
+        }
+        throw new AssertionError( "Field " + name + " not found" );
+    }
+
+}
@@ -18,10 +18,13 @@ package de.javakaffee.kryoserializers;
 
 import static de.javakaffee.kryoserializers.TestClasses.createPerson;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.URI;
@@ -46,6 +49,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -58,6 +62,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
@@ -77,6 +82,7 @@ import de.javakaffee.kryoserializers.TestClasses.MyContainer;
 import de.javakaffee.kryoserializers.TestClasses.Person;
 import de.javakaffee.kryoserializers.TestClasses.Person.Gender;
 import de.javakaffee.kryoserializers.TestClasses.SomeInterface;
+import de.javakaffee.kryoserializers.TestClasses.SomeInterfaceImpl;
 
 /**
  * Test for {@link Kryo} serialization.
@@ -181,6 +187,55 @@ public class KryoTest {
         assertDeepEquals( deserialized, set );
     }
     
+    @DataProvider
+    public Object[][] enumSets() {
+        return new Object[][] {
+            { EnumSet.noneOf( Gender.class ) },
+            { EnumSet.of( Gender.FEMALE ) },
+            // JumboEnumSet, UnicodeScript has more than 64 constants
+            { EnumSet.noneOf( Character.UnicodeScript.class ) },
+            { EnumSet.of( Character.UnicodeScript.COMMON, Character.UnicodeScript.HAN, Character.UnicodeScript.UNKNOWN ) },
+            { EnumSet.allOf( Character.UnicodeScript.class ) },
+        };
+    }
+
+    @Test( enabled = true, dataProvider = "enumSets" )
+    public void testEnumSetBitmask( final EnumSet<?> set ) throws Exception {
+        final EnumSet<?> deserialized = deserialize( serialize( set ), set.getClass() );
+        assertEquals( deserialized, set );
+        assertEquals( deserialized.size(), set.size() );
+        assertEquals( deserialized.getClass(), set.getClass() );
+    }
+
+    @DataProvider
+    public Object[][] invalidEnumSetBitmasks() {
+        // UnicodeScript has more than 64 constants, the exact number depends on the jdk
+        final int scripts = Character.UnicodeScript.values().length;
+        final long[] scriptsOutOfRange = new long[( scripts + 63 ) >>> 6];
+        scriptsOutOfRange[scriptsOutOfRange.length - 1] = -1L;
+        return new Object[][] {
+            // Gender has two constants
+            { Gender.class, new long[] { 1L << 2 } },
+            { Gender.class, new long[] { 1L, 0L } },
+            { Character.UnicodeScript.class, new long[scriptsOutOfRange.length + 1] },
+            { Character.UnicodeScript.class, scriptsOutOfRange },
+        };
+    }
+
+    @Test( dataProvider = "invalidEnumSetBitmasks", expectedExceptions = KryoException.class )
+    public void testEnumSetInvalidBitmask( final Class<?> elementType, final long[] words ) throws Exception {
+        final Output output = new Output( 64 );
+        _kryo.writeClass( output, elementType );
+        output.writeVarInt( words.length, true );
+        if ( words.length == 1 ) {
+            output.writeVarLong( words[0], true );
+        }
+        else {
+            output.writeLongs( words, 0, words.length );
+        }
+        new EnumSetSerializer().read( _kryo, new Input( output.toBytes() ), null );
+    }
+
     @Test
     public void testCopyEnumSet() throws Exception {
         final EnumSet<?> set = EnumSet.allOf( Gender.class );
@@ -240,6 +295,25 @@ public class KryoTest {
         assertEquals( deserialized.item.isLenient(), cal.item.isLenient() );
     }
 
+    @Test( enabled = true )
+    public void testGregorianCalendarTimeZones() throws Exception {
+        final List<Calendar> calendars = new ArrayList<Calendar>();
+        for ( final String timeZoneId : new String[] { "Europe/Berlin", "America/New_York", "Europe/Berlin", "GMT+05:30", "America/New_York" } ) {
+            final Calendar calendar = Calendar.getInstance( TimeZone.getTimeZone( timeZoneId ), Locale.ENGLISH );
+            calendar.setTimeInMillis( 1234567890123L + calendars.size() );
+            calendars.add( calendar );
+        }
+        final Holder<List<Calendar>> cals = new Holder<List<Calendar>>( calendars );
+        @SuppressWarnings( "unchecked" )
+        final Holder<List<Calendar>> deserialized = deserialize( serialize( cals ), Holder.class );
+        for ( int i = 0; i < calendars.size(); i++ ) {
+            assertEquals( deserialized.item.get( i ), calendars.get( i ) );
+            assertEquals( deserialized.item.get( i ).get( Calendar.HOUR_OF_DAY ), calendars.get( i ).get( Calendar.HOUR_OF_DAY ) );
+        }
+        // each calendar gets its own time zone instance
+        assertNotSame( deserialized.item.get( 0 ).getTimeZone(), deserialized.item.get( 2 ).getTimeZone() );
+    }
+
     @Test( enabled = true )
     public void testCopyGregorianCalendar() throws Exception {
         final Holder<Calendar> cal = new Holder<Calendar>( Calendar.getInstance( Locale.ENGLISH ) );
@@ -279,6 +353,67 @@ public class KryoTest {
         assertEquals( deserialized.item.getTime(), cal.item.getTime() );
     }
 
+    @Test( enabled = true )
+    public void testJavaSqlTimestampNanos() throws Exception {
+        for ( final long time : new long[] { 1234567890123L, -1234567890123L } ) {
+            final Timestamp timestamp = new Timestamp( time );
+            timestamp.setNanos( timestamp.getNanos() + 456789 );
+            final Holder<Timestamp> cal = new Holder<Timestamp>( timestamp );
+            @SuppressWarnings( "unchecked" )
+            final Holder<Timestamp> deserialized = deserialize( serialize( cal ), Holder.class );
+            assertEquals( deserialized.item, timestamp );
+            assertEquals( deserialized.item.getNanos(), timestamp.getNanos() );
+        }
+    }
+
+    @Test( enabled = true )
+    public void testDateSubclass() throws Exception {
+        final Holder<Date> date = new Holder<Date>( new MyDate( 1234567890123L ) );
+        @SuppressWarnings( "unchecked" )
+        final Holder<Date> deserialized = deserialize( serialize( date ), Holder.class );
+        assertEquals( deserialized.item.getClass(), MyDate.class );
+        assertEquals( deserialized.item.getTime(), date.item.getTime() );
+    }
+
+    public static class MyDate extends Date {
+        private static final long serialVersionUID = 1L;
+        public MyDate( final long time ) {
+            super( time );
+        }
+    }
+
+    @Test( enabled = true )
+    public void testDateEpochDelta() throws Exception {
+        final long now = 1234567890123L;
+        final List<Date> dates = new ArrayList<Date>();
+        for ( int i = 0; i < 100; i++ ) {
+            dates.add( new Date( now + i * 1000 ) );
+            dates.add( new Timestamp( now - i * 100 ) );
+        }
+
+        final Kryo kryo = createDateKryo( true );
+        final Output output = new Output( 4096 );
+        kryo.writeObject( output, dates );
+        final Output plainOutput = new Output( 4096 );
+        createDateKryo( false ).writeObject( plainOutput, dates );
+        assertEquals( output.position() < plainOutput.position() * 2 / 3, true,
+                "Expected " + output.position() + " to be much smaller than " + plainOutput.position() );
+
+        @SuppressWarnings( "unchecked" )
+        final List<Date> deserialized = kryo.readObject( new Input( output.toBytes() ), ArrayList.class );
+        assertEquals( deserialized, dates );
+        // the next graph starts with a new base time
+        assertEquals( deserialize( kryo, serialize( kryo, new Date( now ) ), Date.class ), new Date( now ) );
+    }
+
+    private static Kryo createDateKryo( final boolean epochDelta ) {
+        final Kryo kryo = new Kryo();
+        kryo.register( ArrayList.class );
+        kryo.register( Date.class, new DateSerializer( Date.class, epochDelta ) );
+        kryo.register( Timestamp.class, new DateSerializer( Timestamp.class, epochDelta ) );
+        return kryo;
+    }
+
     @Test( enabled = true )
     public void testCopyJavaSqlTimestamp() throws Exception {
         final Holder<Timestamp> cal = new Holder<Timestamp>( new Timestamp(System.currentTimeMillis()) );
@@ -341,6 +476,35 @@ public class KryoTest {
         assertDeepEquals(copy, bitSet);
     }
 
+    @DataProvider
+    public Object[][] bitSets() {
+        final BitSet sparse = new BitSet();
+        sparse.set( 3 );
+        sparse.set( 1000 );
+        sparse.set( 20000 );
+        final BitSet dense = new BitSet();
+        for ( int i = 0; i < 1000; i += 3 ) {
+            dense.set( i );
+        }
+        final BitSet runs = new BitSet();
+        runs.set( 10, 5000 );
+        runs.set( 7000, 12000 );
+        return new Object[][] {
+            { new BitSet(), BitSetSerializer.DENSE },
+            { sparse, BitSetSerializer.SPARSE },
+            { dense, BitSetSerializer.DENSE },
+            { runs, BitSetSerializer.RUN_LENGTH },
+        };
+    }
+
+    @Test( enabled = true, dataProvider = "bitSets" )
+    public void testBitSetEncodings( final BitSet bitSet, final int expectedMode ) throws Exception {
+        assertEquals( BitSetSerializer.chooseMode( bitSet, bitSet.length() ), expectedMode );
+        final BitSet deserialized = deserialize( serialize( bitSet ), BitSet.class );
+        assertEquals( deserialized, bitSet );
+        assertEquals( _kryo.copy( bitSet ), bitSet );
+    }
+
     @Test( enabled = true )
     public void testURI() throws Exception {
         final Holder<URI> uri = new Holder<URI>( new URI("http://www.google.com") );
@@ -349,6 +513,69 @@ public class KryoTest {
         assertDeepEquals(deserialized, uri);
     }
 
+    @DataProvider
+    public Object[][] uris() {
+        return new Object[][] {
+            { "http://www.google.com" },
+            { "https://user:pw@www.example.org:8443/a%20b/c?q=1&r=%3D#frag" },
+            { "http://[::1]:8080/" },
+            { "//www.example.org/path" },
+            { "../relative/path?x=y" },
+            { "" },
+            { "#fragment" },
+            { "mailto:foo@example.org" },
+            { "urn:isbn:096139210x#x" },
+            { "file:///tmp/foo" },
+            { "file:/tmp/foo" },
+            { "http://under_score.example.org/registry" },
+            { "http://www.example.org:/empty-port" }
+        };
+    }
+
+    @Test( dataProvider = "uris" )
+    public void testURIs( final String string ) throws Exception {
+        final URI uri = new URI( string );
+        final URI deserialized = deserialize( serialize( uri ), URI.class );
+        assertEquals( deserialized, uri );
+        assertEquals( deserialized.hashCode(), uri.hashCode() );
+        assertEquals( deserialized.toString(), uri.toString() );
+        assertEquals( deserialized.getScheme(), uri.getScheme() );
+        assertEquals( deserialized.getRawSchemeSpecificPart(), uri.getRawSchemeSpecificPart() );
+        assertEquals( deserialized.getRawAuthority(), uri.getRawAuthority() );
+        assertEquals( deserialized.getUserInfo(), uri.getUserInfo() );
+        assertEquals( deserialized.getHost(), uri.getHost() );
+        assertEquals( deserialized.getPort(), uri.getPort() );
+        assertEquals( deserialized.getPath(), uri.getPath() );
+        assertEquals( deserialized.getQuery(), uri.getQuery() );
+        assertEquals( deserialized.getFragment(), uri.getFragment() );
+        assertEquals( deserialized.resolve( "foo" ), uri.resolve( "foo" ) );
+    }
+
+    @Test( enabled = true )
+    public void testURIDictionary() throws Exception {
+        final List<URI> uris = new ArrayList<URI>();
+        for ( int i = 0; i < 100; i++ ) {
+            uris.add( new URI( "http://www.example.org/page" + ( i % 10 ) ) );
+            uris.add( new URI( "https://other.example.org/page" + ( i % 10 ) ) );
+        }
+        final Output output = new Output( 8192 );
+        _kryo.writeObject( output, uris );
+        // the 20 distinct uris are written once, the others are written as id
+        assertEquals( output.position() < 20 * 40 + uris.size() * 2, true, "Size was " + output.position() );
+        @SuppressWarnings( "unchecked" )
+        final List<URI> deserialized = _kryo.readObject( new Input( output.toBytes() ), ArrayList.class );
+        assertEquals( deserialized, uris );
+        assertSame( deserialized.get( 20 ), deserialized.get( 0 ) );
+    }
+
+    @Test( expectedExceptions = KryoException.class )
+    public void testURIInvalid() throws Exception {
+        final Output output = new Output( 64 );
+        output.writeVarInt( 0, true );
+        output.writeString( "http://a b" );
+        new URISerializer().read( _kryo, new Input( output.toBytes() ), URI.class );
+    }
+
     @Test( enabled = true )
     public void testCopyURI() throws Exception {
         final Holder<URI> uri = new Holder<URI>( new URI("http://www.google.com") );
@@ -384,6 +611,48 @@ public class KryoTest {
         assertDeepEquals( deserializedWithFlags, patternWithFlags );
 	}
 
+    @Test( enabled = true )
+    public void testRegexPatternCache() throws Exception {
+        final RegexSerializer.PatternCache cache = new RegexSerializer.PatternCache( 2 );
+        final Kryo kryo = new Kryo();
+        kryo.register( Pattern.class, new RegexSerializer( cache ) );
+
+        final byte[] serialized = serialize( kryo, Pattern.compile( "a+b" ) );
+        final Pattern first = deserialize( kryo, serialized, Pattern.class );
+        final Pattern second = deserialize( kryo, serialized, Pattern.class );
+        assertEquals( first.pattern(), "a+b" );
+        assertSame( second, first, "Expected the cached pattern" );
+        assertEquals( cache.getMissCount(), 1 );
+        assertEquals( cache.getHitCount(), 1 );
+
+        final Pattern withFlags = deserialize( kryo, serialize( kryo, Pattern.compile( "a+b", Pattern.CASE_INSENSITIVE ) ), Pattern.class );
+        assertEquals( withFlags.flags(), Pattern.CASE_INSENSITIVE );
+        assertEquals( cache.getMissCount(), 2 );
+
+        // the cache is bounded
+        for ( int i = 0; i < 10; i++ ) {
+            deserialize( kryo, serialize( kryo, Pattern.compile( "p" + i ) ), Pattern.class );
+        }
+        assertEquals( cache.size(), 2 );
+        assertEquals( cache.getMissCount(), 12 );
+        cache.clear();
+        assertEquals( cache.size(), 0 );
+    }
+
+    @Test
+    public void testSmallRegexPatternCacheRetainsPatterns() throws Exception {
+        // a small cache is not split into segments, so it retains as many patterns as its max size
+        final RegexSerializer.PatternCache cache = new RegexSerializer.PatternCache( 8 );
+        for ( int round = 0; round < 3; round++ ) {
+            for ( int i = 0; i < 8; i++ ) {
+                cache.get( "p" + i, 0 );
+            }
+        }
+        assertEquals( cache.size(), 8 );
+        assertEquals( cache.getMissCount(), 8 );
+        assertEquals( cache.getHitCount(), 16 );
+    }
+
     @Test( enabled = true )
     public void testCopyRegex() throws Exception {
         final Holder<Pattern> pattern = new Holder<Pattern>( Pattern.compile("regex") );
@@ -571,7 +840,27 @@ public class KryoTest {
         final Holder<List<Email>> deserialized = deserialize( serialize( asListHolder ), Holder.class );
         assertDeepEquals( deserialized, asListHolder );
     }
-    
+
+    @SuppressWarnings( "unchecked" )
+    @Test( enabled = true )
+    public void testJavaUtilArraysAsListMixedTypes() throws Exception {
+        final Holder<List<Number>> asListHolder = new Holder<List<Number>>( Arrays.<Number> asList( 1, null, 2L, new BigDecimal( "3.1" ) ) );
+        final Holder<List<Number>> deserialized = deserialize( serialize( asListHolder ), Holder.class );
+        assertDeepEquals( deserialized, asListHolder );
+        assertEquals( deserialized.item.get( 1 ), null );
+        assertEquals( deserialized.item.get( 2 ), 2L );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Test( enabled = true )
+    public void testJavaUtilArraysAsListCovariantArrayElements() throws Exception {
+        final Holder<List<Object[]>> asListHolder = new Holder<List<Object[]>>( Arrays.asList( new Object[][] { new String[] { "a" }, null, new Object[] { 1 } } ) );
+        final Holder<List<Object[]>> deserialized = deserialize( serialize( asListHolder ), Holder.class );
+        assertDeepEquals( deserialized, asListHolder );
+        assertEquals( deserialized.item.get( 0 ).getClass(), String[].class );
+        assertEquals( deserialized.item.get( 2 ).getClass(), Object[].class );
+    }
+
     @Test( enabled = true )
     public void testCopyJavaUtilArraysAsList() throws Exception {
         final List<String> list = Arrays.<String> asList("foo", "bar");
@@ -587,6 +876,25 @@ public class KryoTest {
         assertDeepEquals( deserialized, bean );
     }
 
+    @Test( enabled = true )
+    public void testJdkProxyList() throws Exception {
+        final List<Object> proxies = new ArrayList<Object>();
+        for ( int i = 0; i < 10; i++ ) {
+            proxies.add( TestClasses.createProxy() );
+            proxies.add( Proxy.newProxyInstance( Thread.currentThread().getContextClassLoader(),
+                    new Class<?>[] { SomeInterface.class }, new TestClasses.MyInvocationHandler( SomeInterfaceImpl.class ) ) );
+        }
+        final Holder<List<Object>> bean = new Holder<List<Object>>( proxies );
+        final byte[] serialized = serialize( bean );
+        @SuppressWarnings( "unchecked" )
+        final Holder<List<Object>> deserialized = deserialize( serialized, Holder.class );
+        assertDeepEquals( deserialized, bean );
+        assertEquals( ( (SomeInterface) deserialized.item.get( 1 ) ).hello(), "hi" );
+        assertEquals( deserialized.item.get( 1 ).getClass().getInterfaces(), new Class<?>[] { SomeInterface.class } );
+        // a second graph must be written with interfaces again
+        assertDeepEquals( deserialize( serialize( bean ), Holder.class ), bean );
+    }
+
     @Test( enabled = true )
     public void testCopyJdkProxy() throws Exception {
         final Holder<SomeInterface> bean = new Holder<SomeInterface>( TestClasses.createProxy() );
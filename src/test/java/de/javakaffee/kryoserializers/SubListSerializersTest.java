@@ -17,6 +17,7 @@
 package de.javakaffee.kryoserializers;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
 import org.objenesis.strategy.StdInstantiatorStrategy;
 import org.testng.annotations.BeforeClass;
@@ -30,6 +31,7 @@ import java.util.List;
 import static de.javakaffee.kryoserializers.KryoTest.deserialize;
 import static de.javakaffee.kryoserializers.KryoTest.serialize;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Test for {@link SubListSerializers}.
@@ -165,6 +167,63 @@ public class SubListSerializersTest {
         assertEquals( deserialized, lists );
     }
     
+    private static Kryo createKryo(final SubListSerializers.Mode mode) {
+        final Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setReferences(true);
+        SubListSerializers.addDefaultSerializers(kryo, mode);
+        return kryo;
+    }
+
+    private static int serializedSize(final Kryo kryo, final Object obj) {
+        final Output output = new Output(4096);
+        kryo.writeClassAndObject(output, obj);
+        return output.position();
+    }
+
+    @Test( enabled = true )
+    public void testSliceMode() throws Exception {
+        final Kryo kryo = createKryo(SubListSerializers.Mode.SLICE);
+        final List<Integer> parent = new ArrayList<Integer>();
+        for (int i = 0; i < 500; i++) {
+            parent.add(i);
+        }
+        for (final List<Integer> subList : Arrays.asList(parent.subList(10, 20),
+                parent.subList(5, 100).subList(5, 15),
+                new LinkedList<Integer>(parent).subList(10, 20))) {
+            @SuppressWarnings( "unchecked" )
+            final List<Integer> deserialized = deserialize( kryo, serialize( kryo, subList ), subList.getClass() );
+            assertEquals( deserialized, subList );
+            assertEquals( deserialized.getClass(), ArrayList.class );
+
+            final List<Integer> copy = kryo.copy( subList );
+            assertEquals( copy, subList );
+            assertEquals( copy.getClass(), ArrayList.class );
+
+            assertTrue( serializedSize( kryo, subList ) < serializedSize( _kryo, subList ) / 10 );
+        }
+    }
+
+    @Test( enabled = true )
+    @SuppressWarnings( "unchecked" )
+    public void testSliceUnlessParentWrittenMode() throws Exception {
+        final Kryo kryo = createKryo(SubListSerializers.Mode.SLICE_UNLESS_PARENT_WRITTEN);
+        final List<String> parent = arrayList("1", "2", "3", "4");
+
+        // the parent is written before, so the sublist is kept as view of the parent
+        final List<List<String>> withParent = new ArrayList<List<String>>(Arrays.asList(parent, parent.subList(1, 3)));
+        final List<List<String>> deserialized = deserialize( kryo, serialize( kryo, withParent ), withParent.getClass() );
+        assertEquals( deserialized, withParent );
+        deserialized.get(0).set(1, "x");
+        assertEquals( deserialized.get(1).get(0), "x" );
+
+        // the parent is not written, so only the slice is written
+        final List<List<String>> withoutParent = new ArrayList<List<String>>(Arrays.asList(parent.subList(1, 3)));
+        final List<List<String>> deserialized2 = deserialize( kryo, serialize( kryo, withoutParent ), withoutParent.getClass() );
+        assertEquals( deserialized2, withoutParent );
+        assertEquals( deserialized2.get(0).getClass(), ArrayList.class );
+    }
+
     static enum TestEnum {
         ITEM1, ITEM2, ITEM3;
     }
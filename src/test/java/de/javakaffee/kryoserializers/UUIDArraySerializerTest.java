@@ -0,0 +1,128 @@
+package de.javakaffee.kryoserializers;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * A test case for the {@link UUIDArraySerializer} and the {@link UUIDCollectionSerializer}.
+ */
+public class UUIDArraySerializerTest {
+
+    private Kryo _kryo;
+
+    @BeforeMethod
+    protected void beforeMethod() {
+        _kryo = new Kryo();
+        _kryo.register( UUID.class, new UUIDSerializer() );
+        _kryo.register( UUID[].class, new UUIDArraySerializer() );
+        _kryo.register( ArrayList.class, new UUIDCollectionSerializer() );
+        _kryo.register( HashSet.class, new UUIDCollectionSerializer() );
+        _kryo.register( LinkedList.class, new UUIDCollectionSerializer() );
+        _kryo.register( String.class );
+    }
+
+    private static UUID timeBased( final long timestamp, final long clockSequence, final long node ) {
+        final long msb = timestamp << 32 | ( ( timestamp >>> 32 ) & 0xFFFFL ) << 16 | 0x1000L | ( ( timestamp >>> 48 ) & 0x0FFFL );
+        final UUID result = new UUID( msb, 0x8000000000000000L | clockSequence << 48 | node );
+        assertEquals( result.version(), 1 );
+        assertEquals( result.timestamp(), timestamp );
+        return result;
+    }
+
+    private static UUID timeOrdered( final long millis, final Random random ) {
+        final UUID result = new UUID( millis << 16 | 0x7000L | random.nextInt( 0x1000 ),
+                0x8000000000000000L | random.nextLong() >>> 2 );
+        assertEquals( result.version(), 7 );
+        return result;
+    }
+
+    @DataProvider
+    public Object[][] uuidArrays() {
+        final Random random = new Random( 42 );
+        final UUID[] timeBased = new UUID[100];
+        final UUID[] timeOrdered = new UUID[100];
+        final UUID[] random4 = new UUID[100];
+        for ( int i = 0; i < 100; i++ ) {
+            timeBased[i] = timeBased( 0x1e0f3a2b4c5d6e7L + i * 17 + ( i % 7 == 0 ? -3 : 0 ), 0x1234, 0xabcdef012345L );
+            timeOrdered[i] = timeOrdered( 1700000000000L + i, random );
+            random4[i] = UUID.randomUUID();
+        }
+        final List<UUID> mixed = new ArrayList<UUID>();
+        mixed.add( null );
+        mixed.addAll( Arrays.asList( timeBased ).subList( 0, 10 ) );
+        mixed.add( random4[0] );
+        mixed.add( timeOrdered[0] );
+        mixed.add( null );
+        mixed.add( timeBased[20] );
+        mixed.addAll( Arrays.asList( timeOrdered ).subList( 1, 10 ) );
+        mixed.addAll( Arrays.asList( random4 ).subList( 1, 10 ) );
+        mixed.add( null );
+        return new Object[][] {
+            { new UUID[0] },
+            { new UUID[] { null } },
+            { new UUID[] { null, null, UUID.randomUUID() } },
+            { timeBased },
+            { timeOrdered },
+            { random4 },
+            { mixed.toArray( new UUID[mixed.size()] ) }
+        };
+    }
+
+    @Test( dataProvider = "uuidArrays" )
+    public void testArray( final UUID[] uuids ) {
+        assertTrue( Arrays.equals( roundtrip( uuids, UUID[].class ), uuids ) );
+        assertTrue( Arrays.equals( _kryo.copy( uuids ), uuids ) );
+    }
+
+    @Test( dataProvider = "uuidArrays" )
+    public void testCollection( final UUID[] uuids ) {
+        final ArrayList<UUID> list = new ArrayList<UUID>( Arrays.asList( uuids ) );
+        assertEquals( roundtrip( list, ArrayList.class ), list );
+        final LinkedList<UUID> linkedList = new LinkedList<UUID>( list );
+        assertEquals( roundtrip( linkedList, LinkedList.class ), linkedList );
+        final HashSet<UUID> set = new HashSet<UUID>( list );
+        assertEquals( roundtrip( set, HashSet.class ), set );
+    }
+
+    @Test
+    public void testTimeBasedRunsAreDeltaEncoded() {
+        final UUID[] uuids = new UUID[1000];
+        for ( int i = 0; i < uuids.length; i++ ) {
+            uuids[i] = timeBased( 0x1e0f3a2b4c5d6e7L + i * 10000, 0x1234, 0xabcdef012345L );
+        }
+        // the first uuid is written with 16 bytes, the others with 4
+        assertTrue( serialize( uuids ).length < 20 + uuids.length * 4 );
+    }
+
+    @Test
+    public void testNonUUIDCollection() {
+        final ArrayList<Object> list = new ArrayList<Object>( Arrays.asList( "foo", UUID.randomUUID(), null ) );
+        assertEquals( roundtrip( list, ArrayList.class ), list );
+    }
+
+    private byte[] serialize( final Object object ) {
+        final Output output = new Output( 4096, -1 );
+        _kryo.writeObject( output, object );
+        return output.toBytes();
+    }
+
+    private <T> T roundtrip( final T object, final Class<T> type ) {
+        return _kryo.readObject( new Input( serialize( object ) ), type );
+    }
+}
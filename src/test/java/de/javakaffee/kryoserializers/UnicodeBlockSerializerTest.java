@@ -1,6 +1,8 @@
 package de.javakaffee.kryoserializers;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
 import org.objenesis.ObjenesisStd;
 import org.objenesis.strategy.StdInstantiatorStrategy;
@@ -8,9 +10,12 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import java.lang.Character.UnicodeBlock;
+import java.util.ArrayList;
+import java.util.List;
 
 import static de.javakaffee.kryoserializers.KryoTest.deserialize;
 import static de.javakaffee.kryoserializers.KryoTest.serialize;
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertSame;
 
@@ -49,12 +54,47 @@ public class UnicodeBlockSerializerTest {
                 UnicodeBlock.UNIFIED_CANADIAN_ABORIGINAL_SYLLABICS);
     }
 
+    @Test
+    public void testAllBlocks() {
+        UnicodeBlock previous = null;
+        for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT; codePoint++) {
+            UnicodeBlock block = UnicodeBlock.of(codePoint);
+            if (block != null && block != previous) {
+                byte[] serialized = serialize(kryo, block);
+                assertSame(deserialize(kryo, serialized, UnicodeBlock.class), block);
+                previous = block;
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatedBlocks() {
+        kryo.register(ArrayList.class);
+        final List<UnicodeBlock> blocks = new ArrayList<UnicodeBlock>();
+        for (int i = 0; i < 10; i++) {
+            blocks.add(UnicodeBlock.GREEK);
+            blocks.add(UnicodeBlock.BASIC_LATIN);
+        }
+        final byte[] serialized = serialize(kryo, blocks);
+        final List<?> deserialized = deserialize(kryo, serialized, ArrayList.class);
+        assertEquals(deserialized, blocks);
+        assertSame(deserialized.get(2), UnicodeBlock.GREEK);
+    }
+
     @Test
     public void testDeserializingUnknownInstanceReturnsNull() {
         byte[] serialized = serialize(kryo, new ObjenesisStd().newInstance(UnicodeBlock.class));
         assertNull(deserialize(kryo, serialized, UnicodeBlock.class));
     }
 
+    @Test
+    public void testDeserializingUnknownNameReturnsNull() {
+        final Output output = new Output(64);
+        output.writeVarInt(0, true);
+        output.writeString(NONEXISTENT_BLOCK_NAME);
+        assertNull(new UnicodeBlockSerializer().read(kryo, new Input(output.toBytes()), UnicodeBlock.class));
+    }
+
     @Test
     public void testCopyContainingObject() {
         ThingWithUnicodeBlock original = new ThingWithUnicodeBlock(UnicodeBlock.GREEK);
@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -175,6 +176,28 @@ public class CGLibProxySerializerTest {
         assertEquals( deserialized.getValue(), proxy.getValue() );
     }
 
+    @Test( enabled = true )
+    public void testCGLibProxyList() {
+        final List<ClassToProxy> proxies = new ArrayList<ClassToProxy>();
+        for ( int i = 0; i < 3; i++ ) {
+            final ClassToProxy proxy = createProxy( new ClassToProxy() );
+            proxy.setValue( "foo" + i );
+            proxies.add( proxy );
+        }
+
+        // the second run uses the cached proxy class
+        for ( int run = 0; run < 2; run++ ) {
+            @SuppressWarnings( "unchecked" )
+            final List<ClassToProxy> deserialized = deserialize(_kryo, serialize(_kryo, proxies), ArrayList.class );
+            assertEquals( deserialized.size(), 3 );
+            for ( int i = 0; i < 3; i++ ) {
+                assertEquals( deserialized.get( i ).getValue(), "foo" + i );
+            }
+            deserialized.get( 0 ).setValue( "bar" );
+            assertEquals( deserialized.get( 1 ).getValue(), "foo1" );
+        }
+    }
+
     /**
      * Test that a cglib proxy is handled correctly.
      */
@@ -39,4 +39,13 @@ public class ArrayListMultimapSerializerTest extends MultimapSerializerTestBase
         assertNotSame(copy, multimap);
         assertEqualMultimaps(false, true, copy, multimap);
     }
+
+    @Test(dataProvider = "Google Guava multimaps")
+    public void testMultimapFormerFormat(Object[] contents) {
+        final ArrayListMultimap<Object, Object> multimap = ArrayListMultimap.create();
+        populateMultimap(multimap, contents);
+        final byte[] serialized = serializeFormerFormat(multimap);
+        final ArrayListMultimap<Object, Object> deserialized = KryoTest.deserialize(_kryo, serialized, ArrayListMultimap.class);
+        assertEqualMultimaps(false, true, deserialized, multimap);
+    }
 }
@@ -4,13 +4,20 @@ import com.esotericsoftware.kryo.Kryo;
 import com.google.common.collect.ArrayTable;
 import de.javakaffee.kryoserializers.KryoTest;
 import org.testng.annotations.BeforeTest;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 public class ArrayTableSerializerTest extends TableSerializerTestBase {
 
@@ -58,4 +65,67 @@ public class ArrayTableSerializerTest extends TableSerializerTestBase {
         assertEquals(copy, table);
     }
 
-}
\ No newline at end of file
+    @DataProvider(name = "values")
+    public Object[][] getValues() {
+        return new Object[][] {
+                { 1, -2, Integer.MAX_VALUE },
+                { 1L, -2L, Long.MIN_VALUE },
+                { 1.5d, -2d, Double.NaN },
+                { 1.5f, -2f, Float.MAX_VALUE },
+                { (short) 1, (short) -2, Short.MIN_VALUE },
+                { (byte) 1, (byte) -2, Byte.MAX_VALUE },
+                { 'a', '\u00e4', Character.MAX_VALUE },
+                { true, false, true },
+                { "a", "", "\u00e4\u00f6\u00fc" },
+                { 1, 2L, "3" },
+                { new Date(1), new Date(2), new Date(3) }
+        };
+    }
+
+    @Test(dataProvider = "values")
+    public void testValueTypes(Object value1, Object value2, Object value3) {
+        final List<Object> values = Arrays.asList(value1, value2, value3);
+        final List<Integer> rowKeys = new ArrayList<Integer>();
+        for (int row = 0; row < 70; row++) {
+            rowKeys.add(row);
+        }
+        final ArrayTable<Integer, String, Object> table = ArrayTable.create(rowKeys, Arrays.asList("a", "b", "c"));
+        for (int row = 0; row < 70; row++) {
+            table.set(row, 0, values.get(row % 3));
+            // some nulls
+            table.set(row, 1, row % 5 == 0 ? null : values.get(row % 3));
+            table.set(row, 2, values.get(2));
+        }
+        final byte[] serialized = KryoTest.serialize(_kryo, table);
+        final ArrayTable<Integer, String, Object> deserialized = KryoTest.deserialize(_kryo, serialized, ArrayTable.class);
+        assertEquals(deserialized, table);
+        assertNull(deserialized.at(5, 1));
+    }
+
+    @Test
+    public void testAllNull() {
+        final ArrayTable<Integer, Integer, Object> table = ArrayTable.create(Arrays.asList(1, 2, 3), Arrays.asList(1, 2));
+        final byte[] serialized = KryoTest.serialize(_kryo, table);
+        final ArrayTable<Integer, Integer, Object> deserialized = KryoTest.deserialize(_kryo, serialized, ArrayTable.class);
+        assertEquals(deserialized, table);
+        assertEquals(deserialized.rowKeyList(), table.rowKeyList());
+        assertEquals(deserialized.columnKeyList(), table.columnKeyList());
+    }
+
+    @Test
+    public void testDeepCopy() {
+        final ArrayTable<Integer, Integer, Object> table = ArrayTable.create(Arrays.asList(1, 2), Arrays.asList(1, 2));
+        table.set(0, 0, new Date(1));
+        table.set(1, 1, new Date(2));
+
+        final ArrayTable<Integer, Integer, Object> copy = _kryo.copy(table);
+
+        assertEquals(copy, table);
+        assertNotSame(copy.at(0, 0), table.at(0, 0));
+        assertNotSame(copy.at(1, 1), table.at(1, 1));
+        assertNull(copy.at(0, 1));
+        assertSame(copy.rowKeyList(), table.rowKeyList());
+        assertSame(copy.columnKeyList(), table.columnKeyList());
+    }
+
+}
@@ -1,6 +1,8 @@
 package de.javakaffee.kryoserializers.guava;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.HashBasedTable;
 import de.javakaffee.kryoserializers.KryoTest;
 import org.testng.annotations.BeforeTest;
@@ -8,6 +10,7 @@ import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
 
 public class HashBasedTableSerializerTest extends TableSerializerTestBase {
 
@@ -40,4 +43,21 @@ public class HashBasedTableSerializerTest extends TableSerializerTestBase {
         assertEquals(copy, table);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSharedColumnKeys() {
+        final HashBasedTable<Object, Object, Object> table = HashBasedTable.create();
+        final String columnPrefix = "a column with a rather long name ";
+        for (int row = 0; row < 100; row++) {
+            for (int column = 0; column < 10; column++) {
+                table.put(row, columnPrefix + column, row * column);
+            }
+        }
+        final Output output = new Output(4096, -1);
+        _kryo.writeObject(output, table);
+        final HashBasedTable<?, ?, ?> deserialized = _kryo.readObject(new Input(output.toBytes()), HashBasedTable.class);
+        assertEquals(deserialized, table);
+        // each column key is written once
+        assertTrue(output.position() < 100 * 10 * columnPrefix.length() / 4, "Serialized size: " + output.position());
+    }
+
+}
@@ -3,9 +3,11 @@ package de.javakaffee.kryoserializers.guava;
 import com.esotericsoftware.kryo.Kryo;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Maps;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.Map;
 
@@ -69,6 +71,32 @@ public class ImmutableMapSerializerTest {
         assertEquals(deserialized, immutableObj);
     }
 
+    @Test
+    public void testEnumKeysSubset() {
+        final EnumMap<Planet, Integer> obj = new EnumMap<Planet, Integer>(Planet.class);
+        obj.put(Planet.VENUS, 2);
+        obj.put(Planet.MARS, 4);
+
+        final ImmutableMap<?, ?> immutableObj = Maps.immutableEnumMap(obj);
+        final byte[] serialized = serialize(_kryo, immutableObj);
+        final ImmutableMap<?, ?> deserialized = deserialize(_kryo, serialized, ImmutableMap.class);
+        assertEquals(deserialized, immutableObj);
+        assertEquals(deserialized.getClass(), immutableObj.getClass());
+    }
+
+    @Test
+    public void testIterationOrder() {
+        final ImmutableMap.Builder<Object, Object> builder = ImmutableMap.builder();
+        for (int i = 100; i > 0; i--) {
+            builder.put("k" + i, i);
+        }
+        final ImmutableMap<?, ?> obj = builder.build();
+        final byte[] serialized = serialize(_kryo, obj);
+        final ImmutableMap<?, ?> deserialized = deserialize(_kryo, serialized, ImmutableMap.class);
+        assertEquals(deserialized, obj);
+        assertEquals(new ArrayList<Object>(deserialized.keySet()), new ArrayList<Object>(obj.keySet()));
+    }
+
     @Test
     public void testRowMap() {
         ImmutableMap<Object, Map<Object, Object>> obj = getDenseImmutableTable().rowMap();
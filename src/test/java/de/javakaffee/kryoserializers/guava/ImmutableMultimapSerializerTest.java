@@ -1,6 +1,8 @@
 package de.javakaffee.kryoserializers.guava;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMultimap;
 
@@ -10,6 +12,9 @@ import com.google.common.collect.ImmutableSetMultimap;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import static de.javakaffee.kryoserializers.KryoTest.deserialize;
 import static de.javakaffee.kryoserializers.KryoTest.serialize;
 
@@ -125,6 +130,32 @@ public class ImmutableMultimapSerializerTest {
         assertEquals(deserialized, obj);
     }
 
+    @Test
+    public void testImmutableSetMultimapType() {
+        for (final ImmutableMultimap<?, ?> obj : Arrays.<ImmutableMultimap<?, ?>>asList(
+                ImmutableSetMultimap.of(), ImmutableSetMultimap.of(1, "a", 1, "b"))) {
+            final Output output = new Output(4096);
+            _kryo.writeClassAndObject(output, obj);
+            final Object deserialized = _kryo.readClassAndObject(new Input(output.toBytes()));
+            assertTrue(deserialized instanceof ImmutableSetMultimap);
+            assertEquals(deserialized, obj);
+        }
+    }
+
+    @Test
+    public void testImmutableListMultimapOrder() {
+        final ImmutableListMultimap.Builder<Object, Object> builder = ImmutableListMultimap.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.put("k" + (i % 7), 100 - i);
+        }
+        final ImmutableListMultimap<Object, Object> obj = builder.build();
+        final byte[] serialized = serialize(_kryo, obj);
+        final ImmutableMultimap<?, ?> deserialized = deserialize(_kryo, serialized, ImmutableListMultimap.class);
+        assertTrue(deserialized instanceof ImmutableListMultimap);
+        assertEquals(deserialized, obj);
+        assertEquals(new ArrayList<Object>(deserialized.entries()), new ArrayList<Object>(obj.entries()));
+    }
+
     @Test
     public void testImmutableMapSerializerAlreadyRegistered() {
         ImmutableMapSerializer.registerSerializers(_kryo);
@@ -4,9 +4,11 @@ import com.esotericsoftware.kryo.Kryo;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
 
 import static de.javakaffee.kryoserializers.KryoTest.deserialize;
@@ -62,6 +64,28 @@ public class ImmutableSortedMapSerializerTest {
         assertEquals(deserialized, obj);
     }
 
+    @Test
+    public void testComparator() {
+        final ImmutableSortedMap.Builder<String, Integer> builder = ImmutableSortedMap.orderedBy(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < 100; i++) {
+            builder.put((i % 2 == 0 ? "K" : "k") + i, i);
+        }
+        final ImmutableSortedMap<String, Integer> obj = builder.build();
+        final byte[] serialized = serialize(_kryo, obj);
+        final ImmutableSortedMap<?, ?> deserialized = deserialize(_kryo, serialized, ImmutableSortedMap.class);
+        assertEquals(deserialized, obj);
+        assertEquals(new ArrayList<Object>(deserialized.keySet()), new ArrayList<Object>(obj.keySet()));
+        assertEquals(deserialized.comparator().getClass(), String.CASE_INSENSITIVE_ORDER.getClass());
+        assertEquals(deserialized.get("K1"), 1);
+    }
+
+    @Test
+    public void testNaturalOrdering() {
+        final ImmutableSortedMap<?, ?> obj = ImmutableSortedMap.of(5, "r", 3, "k", 6, "y");
+        final ImmutableSortedMap<?, ?> deserialized = deserialize(_kryo, serialize(_kryo, obj), ImmutableSortedMap.class);
+        assertSame(deserialized.comparator(), Ordering.natural());
+    }
+
     @Test
     public void testEnum() {
         final EnumMap<Planet, String> obj = new EnumMap<Planet, String>(Planet.class);
@@ -8,9 +8,12 @@ import static org.testng.Assert.assertTrue;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+
 /**
  * Test for {@link ImmutableSortedSetSerializer}.
  */
@@ -58,6 +61,27 @@ public class ImmutableSortedSetSerializerTest {
         assertEquals(deserialized, obj);
     }
 
+    @Test
+    public void testComparator() {
+        final ImmutableSortedSet.Builder<String> builder = ImmutableSortedSet.orderedBy(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < 100; i++) {
+            builder.add((i % 2 == 0 ? "K" : "k") + i);
+        }
+        final ImmutableSortedSet<String> obj = builder.build();
+        final byte[] serialized = serialize(_kryo, obj);
+        final ImmutableSortedSet<?> deserialized = deserialize(_kryo, serialized, ImmutableSortedSet.class);
+        assertEquals(deserialized, obj);
+        assertEquals(new ArrayList<Object>(deserialized), new ArrayList<Object>(obj));
+        assertTrue(deserialized.contains("K1"));
+    }
+
+    @Test
+    public void testNaturalOrdering() {
+        final ImmutableSortedSet<?> obj = ImmutableSortedSet.of(3, 4, 5, 6);
+        final ImmutableSortedSet<?> deserialized = deserialize(_kryo, serialize(_kryo, obj), ImmutableSortedSet.class);
+        assertSame(deserialized.comparator(), Ordering.natural());
+    }
+
     @Test
     public void testStringAsImmutableSortedSet() {
         final ImmutableSortedSet<?> obj = ImmutableSortedSet.of("K","r", "y", "o");
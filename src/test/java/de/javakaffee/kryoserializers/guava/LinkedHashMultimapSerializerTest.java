@@ -26,6 +26,7 @@ public class LinkedHashMultimapSerializerTest extends MultimapSerializerTestBase
         final byte[] serialized = KryoTest.serialize(_kryo, multimap);
         final LinkedHashMultimap<Object, Object> deserialized = KryoTest.deserialize(_kryo, serialized, LinkedHashMultimap.class);
         assertEqualMultimaps(true, true, deserialized, multimap);
+        assertEqualEntries(deserialized, multimap);
     }
 
     @Test(dataProvider = "Google Guava multimaps")
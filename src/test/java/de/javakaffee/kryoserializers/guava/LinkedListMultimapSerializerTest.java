@@ -27,6 +27,7 @@ public class LinkedListMultimapSerializerTest extends MultimapSerializerTestBase
         final byte[] serialized = KryoTest.serialize(_kryo, multimap);
         final LinkedListMultimap<Object, Object> deserialized = KryoTest.deserialize(_kryo, serialized, LinkedListMultimap.class);
         assertEqualMultimaps(true, true, deserialized, multimap);
+        assertEqualEntries(deserialized, multimap);
     }
 
     @Test(dataProvider = "Google Guava multimaps")
@@ -39,4 +40,13 @@ public class LinkedListMultimapSerializerTest extends MultimapSerializerTestBase
         assertNotSame(copy, multimap);
         assertEqualMultimaps(true, true, copy, multimap);
     }
+
+    @Test(dataProvider = "Google Guava multimaps")
+    public void testMultimapFormerFormat(Object[] contents) {
+        final LinkedListMultimap<Object, Object> multimap = LinkedListMultimap.create();
+        populateMultimap(multimap, contents);
+        final byte[] serialized = serializeFormerFormat(multimap);
+        final LinkedListMultimap<Object, Object> deserialized = KryoTest.deserialize(_kryo, serialized, LinkedListMultimap.class);
+        assertEqualMultimaps(true, true, deserialized, multimap);
+    }
 }
@@ -1,8 +1,14 @@
 package de.javakaffee.kryoserializers.guava;
 
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.Multimap;
+import de.javakaffee.kryoserializers.KryoTest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 
@@ -30,6 +36,34 @@ public abstract class MultimapSerializerTestBase {
         }
     }
 
+    protected <K, V> void assertEqualEntries(Multimap<K, V> actual, Multimap<K, V> expected) {
+        Assert.assertEquals(new ArrayList<Map.Entry<K, V>>(actual.entries()), new ArrayList<Map.Entry<K, V>>(expected.entries()));
+    }
+
+    /**
+     * Serializes the multimap in the format of former versions, i.e. the size followed by each key and value.
+     */
+    protected byte[] serializeFormerFormat(Multimap<?, ?> multimap) {
+        final Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.register(multimap.getClass(), new Serializer<Multimap<?, ?>>() {
+            @Override
+            public void write(Kryo kryo, Output output, Multimap<?, ?> object) {
+                output.writeInt(object.size(), true);
+                for (final Map.Entry<?, ?> entry : object.entries()) {
+                    kryo.writeClassAndObject(output, entry.getKey());
+                    kryo.writeClassAndObject(output, entry.getValue());
+                }
+            }
+
+            @Override
+            public Multimap<?, ?> read(Kryo kryo, Input input, Class<? extends Multimap<?, ?>> type) {
+                throw new UnsupportedOperationException();
+            }
+        });
+        return KryoTest.serialize(kryo, multimap);
+    }
+
     @DataProvider(name = "Google Guava multimaps")
     public Object[][][] getMultimaps() {
         final Object[][] multimaps = new Object[][]{new Object[]{},
@@ -40,7 +74,8 @@ public abstract class MultimapSerializerTestBase {
             new Object[]{"new", Thread.State.NEW, "run", Thread.State.RUNNABLE},
             new Object[]{1.0, "foo", null, "bar", 1.0, null, null, "baz", 1.0, "wibble"},
             new Object[]{'a', 1, 'b', 2, 'c', 3, 'a', 4, 'b', 5},
-            new Object[]{'a', 1, 'b', 2, 'c', 3, 'a', 1, 'b', 2}};
+            new Object[]{'a', 1, 'b', 2, 'c', 3, 'a', 1, 'b', 2},
+            new Object[]{'a', 1, 'a', 2, 'b', 3, 'b', 4, 'a', 5, 'c', 6, 'c', 7}};
         final Object[][][] toProvide = new Object[multimaps.length][][];
         int index = 0;
         for (final Object[] multimap : multimaps) {